@@ -49,6 +49,20 @@ tasks {
         maxHeapSize = "256m"
         useJUnitPlatform()
     }
+
+    register<JavaExec>("daoBenchmark") {
+        description = "Measures DAO GET latency for hits and misses under different table settings"
+        classpath = sourceSets["test"].runtimeClasspath
+        main = "ru.mail.polis.dao.GetLatencyBenchmark"
+        maxHeapSize = "256m"
+    }
+
+    register<JavaExec>("serviceBenchmark") {
+        description = "Measures cluster throughput and latency under 1000 connections"
+        classpath = sourceSets["test"].runtimeClasspath
+        main = "ru.mail.polis.service.ThroughputBenchmark"
+        maxHeapSize = "256m"
+    }
 }
 
 application {
@@ -3,24 +3,47 @@ package ru.mail.polis.dao;
 import org.jetbrains.annotations.NotNull;
 
 import java.nio.ByteBuffer;
-import java.util.Arrays;
 
 public final class ByteBufferUtils {
+    private static final int MAX_SCRATCH_SIZE = 4096;
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[64]);
 
     private ByteBufferUtils(){}
 
     /**
-     * reverse shift bytes.
+     * reverse shift bytes of array in place, array is not copied.
      *
-     * @param key   value to shift
+     * @param key   value to shift, becomes owned by returned buffer
      * @return  shifted value
      */
-    public static ByteBuffer revShift(@NotNull final byte[] key) {
-        final byte[] copy = Arrays.copyOf(key, key.length);
-        for (int i = 0; i < copy.length; i++) {
-            copy[i] += Byte.MIN_VALUE;
+    public static ByteBuffer revShiftInPlace(@NotNull final byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            key[i] += Byte.MIN_VALUE;
+        }
+        return ByteBuffer.wrap(key);
+    }
+
+    /**
+     * shift bytes into thread local array without allocation.
+     * Only first key.remaining() bytes are valid, until the next call on the same thread.
+     *
+     * @param key   value to shift
+     * @return  thread local array with shifted value
+     */
+    public static byte[] shiftToScratch(@NotNull final ByteBuffer key) {
+        final int length = key.remaining();
+        byte[] scratch = SCRATCH.get();
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+            if (scratch.length <= MAX_SCRATCH_SIZE) {
+                SCRATCH.set(scratch);
+            }
+        }
+        final int position = key.position();
+        for (int i = 0; i < length; i++) {
+            scratch[i] = (byte) (key.get(position + i) - Byte.MIN_VALUE);
         }
-        return ByteBuffer.wrap(copy);
+        return scratch;
     }
 
     /**
@@ -23,7 +23,11 @@ import ru.mail.polis.Record;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 /**
@@ -85,6 +89,23 @@ public interface DAO extends Closeable {
         }
     }
 
+    /**
+     * Obtains values corresponding to given keys in one call.
+     * Keys without value are absent from the result, present ones keep the order of given keys.
+     */
+    @NotNull
+    default Map<ByteBuffer, ByteBuffer> getAll(@NotNull Collection<ByteBuffer> keys) throws IOException {
+        final Map<ByteBuffer, ByteBuffer> result = new LinkedHashMap<>();
+        for (final ByteBuffer key : keys) {
+            try {
+                result.put(key, get(key));
+            } catch (NoSuchElementException e) {
+                // skip missing key
+            }
+        }
+        return result;
+    }
+
     /**
      * Inserts or updates value by given key.
      */
@@ -97,6 +118,19 @@ public interface DAO extends Closeable {
      */
     void remove(@NotNull ByteBuffer key) throws IOException;
 
+    /**
+     * Applies mutations in given order, so the last mutation of a key wins.
+     */
+    default void applyAll(@NotNull List<Mutation> mutations) throws IOException {
+        for (final Mutation mutation : mutations) {
+            if (mutation.isRemove()) {
+                remove(mutation.getKey());
+            } else {
+                upsert(mutation.getKey(), mutation.getValue());
+            }
+        }
+    }
+
     /**
      * Performs compaction.
      */
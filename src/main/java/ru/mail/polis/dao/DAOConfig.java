@@ -0,0 +1,108 @@
+package ru.mail.polis.dao;
+
+import org.jetbrains.annotations.Nullable;
+import org.rocksdb.Cache;
+import org.rocksdb.CompressionType;
+
+import java.util.List;
+
+/**
+ * Tuning of {@link DAOImpl}, defaults match plain RocksDB writes.
+ */
+public class DAOConfig {
+    public enum BlockCacheType {
+        LRU,
+        /**
+         * Needs RocksDB built with TBB, otherwise RocksDB runs without block cache.
+         */
+        CLOCK
+    }
+
+    /**
+     * Coalesce concurrent writes into one RocksDB WriteBatch.
+     */
+    public boolean groupCommit;
+
+    /**
+     * Flush group commit batch when it has this many writes.
+     */
+    public int groupCommitMaxBatch = 256;
+
+    /**
+     * Flush group commit batch when its first write waits this long.
+     */
+    public long groupCommitMaxDelayMicros = 500;
+
+    /**
+     * Fsync WAL before completing group committed writes.
+     */
+    public boolean groupCommitSync = true;
+
+    /**
+     * Drop timestamped tombstones older than this, 0 keeps them forever.
+     * Replicas must reconcile within this period, otherwise deleted values may come back.
+     */
+    public long tombstoneGracePeriodMillis;
+
+    /**
+     * How often to look for expired tombstones, 0 sweeps only on compaction.
+     */
+    public long tombstoneSweepIntervalMillis = 60 * 60 * 1000L;
+
+    /**
+     * Off-heap block cache, not limited by Xmx. 0 disables block cache.
+     */
+    public long blockCacheSizeBytes = 64L * 1024 * 1024;
+
+    public BlockCacheType blockCacheType = BlockCacheType.LRU;
+
+    /**
+     * Cache shared by several DAOs in one process, overrides blockCacheSizeBytes.
+     * Owner of the cache closes it after all DAOs are closed.
+     */
+    @Nullable
+    public Cache sharedBlockCache;
+
+    public long blockSizeBytes = 16 * 1024;
+
+    /**
+     * Bits per key of full-key bloom filter, 0 disables filters.
+     */
+    public int bloomFilterBitsPerKey = 10;
+
+    /**
+     * Keep index and filter blocks in block cache instead of table reader memory.
+     */
+    public boolean cacheIndexAndFilterBlocks = true;
+
+    /**
+     * Range scans use tailing iterator that sees writes made after the scan started,
+     * instead of a snapshot taken at its start.
+     */
+    public boolean scanTailing;
+
+    /**
+     * Put blocks read by range scans into block cache. Off by default, so big scans
+     * don't evict the working set of point reads.
+     */
+    public boolean scanFillCache;
+
+    /**
+     * Keep snapshot of a paged scan for the next page this long, 0 disables leases
+     * and every page reads the latest data.
+     */
+    public long scanSnapshotLeaseMillis = 60 * 1000L;
+
+    /**
+     * Paged scans started beyond this limit read without a kept snapshot.
+     */
+    public int maxScanSnapshotLeases = 64;
+
+    /**
+     * Compression of each LSM level starting from L0, the last one is used for deeper levels.
+     */
+    public List<CompressionType> compressionPerLevel = List.of(
+            CompressionType.NO_COMPRESSION,
+            CompressionType.NO_COMPRESSION,
+            CompressionType.LZ4_COMPRESSION);
+}
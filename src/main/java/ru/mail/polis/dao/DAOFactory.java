@@ -41,6 +41,19 @@ public final class DAOFactory {
      */
     @NotNull
     public static DAO create(@NotNull final File data) throws IOException {
+        return create(data, new DAOConfig());
+    }
+
+    /**
+     * Construct a {@link DAO} instance.
+     *
+     * @param data local disk folder to persist the data to
+     * @param config storage tuning
+     * @return a storage instance
+     */
+    @NotNull
+    public static DAO create(@NotNull final File data,
+                             @NotNull final DAOConfig config) throws IOException {
         if (Runtime.getRuntime().maxMemory() > MAX_HEAP) {
             throw new IllegalStateException("The heap is too big. Consider setting Xmx.");
         }
@@ -53,6 +66,6 @@ public final class DAOFactory {
             throw new IllegalArgumentException("Path is not a directory: " + data);
         }
 
-        return DAOImpl.init(data);
+        return DAOImpl.init(data, config);
     }
 }
@@ -1,63 +1,293 @@
 package ru.mail.polis.dao;
 
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.DBOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksIterator;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.Options;
-import org.rocksdb.CompressionType;
 import org.rocksdb.BuiltinComparator;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.Cache;
+import org.rocksdb.ClockCache;
+import org.rocksdb.Filter;
+import org.rocksdb.LRUCache;
+import org.rocksdb.RocksObject;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.Slice;
+import org.rocksdb.Snapshot;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
 
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import ru.mail.polis.Record;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Function;
 
 public final class DAOImpl implements DAO {
+    private static final Log logger = LogFactory.getLog(DAOImpl.class);
+    private static final int LOCK_STRIPES = 1024;
     private final RocksDB db;
     private final AtomicBoolean open = new AtomicBoolean();
+    @Nullable
+    private final GroupCommitter groupCommitter;
+    private final Striped<ReadWriteLock> keyLocks = Striped.readWriteLock(LOCK_STRIPES);
+    @Nullable
+    private final TombstoneCollector tombstoneCollector;
+    @Nullable
+    private final ScheduledExecutorService tombstoneSweeper;
+    private final boolean scanTailing;
+    private final boolean scanFillCache;
+    @Nullable
+    private final SnapshotLeases snapshotLeases;
 
-    private DAOImpl(@NotNull final RocksDB db) {
+    private final HintStore hints;
+
+    private final List<ColumnFamilyHandle> families;
+    private final List<RocksObject> resources;
+
+    private DAOImpl(@NotNull final RocksDB db,
+                    @NotNull final DAOConfig config,
+                    @NotNull final List<ColumnFamilyHandle> families,
+                    @NotNull final List<RocksObject> resources) {
         this.db = db;
+        this.families = families;
+        this.resources = resources;
+        this.hints = new HintStore(db, families.get(1));
+        this.scanTailing = config.scanTailing;
+        this.scanFillCache = config.scanFillCache;
+        this.snapshotLeases = config.scanSnapshotLeaseMillis > 0 && !config.scanTailing
+                ? new SnapshotLeases(db, config.scanSnapshotLeaseMillis, config.maxScanSnapshotLeases)
+                : null;
+        this.groupCommitter = config.groupCommit ? new GroupCommitter(db, config) : null;
+        if (config.tombstoneGracePeriodMillis > 0) {
+            this.tombstoneCollector = new TombstoneCollector(db, config.tombstoneGracePeriodMillis, keyLocks);
+        } else {
+            this.tombstoneCollector = null;
+        }
+        if (tombstoneCollector != null && config.tombstoneSweepIntervalMillis > 0) {
+            this.tombstoneSweeper = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("tombstone-gc-%d").setDaemon(true).build());
+            tombstoneSweeper.scheduleWithFixedDelay(this::sweepTombstones,
+                    config.tombstoneSweepIntervalMillis,
+                    config.tombstoneSweepIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.tombstoneSweeper = null;
+        }
         this.open.set(true);
     }
 
-    static DAO init(final File data) throws IOException {
+    static DAO init(final File data, @NotNull final DAOConfig config) throws IOException {
         RocksDB.loadLibrary();
+        final List<RocksObject> resources = new ArrayList<>();
         try {
             final var options = new Options()
                     .setCreateIfMissing(true)
                     .setComparator(BuiltinComparator.BYTEWISE_COMPARATOR)
-                    .setCompressionType(CompressionType.NO_COMPRESSION)
+                    .setTableFormatConfig(tableConfig(config, resources))
+                    .setCompressionPerLevel(config.compressionPerLevel)
                     .setMaxBackgroundCompactions(2)
                     .setMaxBackgroundFlushes(2);
-            final var db = RocksDB.open(options, data.getAbsolutePath());
-            return new DAOImpl(db);
+            resources.add(options);
+            final var dbOptions = new DBOptions(options).setCreateIfMissing(true).setCreateMissingColumnFamilies(true);
+            resources.add(dbOptions);
+            final var familyOptions = new ColumnFamilyOptions(options);
+            resources.add(familyOptions);
+            // records live in the default column family, hints of other nodes in their own one
+            final List<ColumnFamilyDescriptor> descriptors = List.of(
+                    new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, familyOptions),
+                    new ColumnFamilyDescriptor(HintStore.COLUMN_FAMILY, familyOptions));
+            final List<ColumnFamilyHandle> families = new ArrayList<>(descriptors.size());
+            final var db = RocksDB.open(dbOptions, data.getAbsolutePath(), descriptors, families);
+            return new DAOImpl(db, config, families, resources);
         }catch (RocksDBException e) {
+            resources.forEach(RocksObject::close);
             throw new IOException("can't create DAO", e);
         }
     }
 
+    private static BlockBasedTableConfig tableConfig(@NotNull final DAOConfig config,
+                                                     @NotNull final List<RocksObject> resources) {
+        final var tableConfig = new BlockBasedTableConfig()
+                .setBlockSize(config.blockSizeBytes)
+                .setCacheIndexAndFilterBlocks(config.cacheIndexAndFilterBlocks)
+                .setPinL0FilterAndIndexBlocksInCache(config.cacheIndexAndFilterBlocks);
+        if (config.sharedBlockCache != null) {
+            tableConfig.setBlockCache(config.sharedBlockCache);
+        } else if (config.blockCacheSizeBytes > 0) {
+            final Cache cache = config.blockCacheType == DAOConfig.BlockCacheType.CLOCK
+                    ? new ClockCache(config.blockCacheSizeBytes)
+                    : new LRUCache(config.blockCacheSizeBytes);
+            resources.add(cache);
+            tableConfig.setBlockCache(cache);
+        } else {
+            tableConfig.setNoBlockCache(true);
+        }
+        if (config.bloomFilterBitsPerKey > 0) {
+            final Filter filter = new BloomFilter(config.bloomFilterBitsPerKey, false);
+            resources.add(filter);
+            tableConfig.setFilterPolicy(filter).setWholeKeyFiltering(true);
+        }
+        return tableConfig;
+    }
+
     @NotNull
     @Override
     public Iterator<Record> iterator(@NotNull final ByteBuffer from) throws IOException {
-        final RocksIterator Iterator = db.newIterator();
-        final byte[] unpackedKey = ByteBufferUtils.shift(from);
-        Iterator.seek(unpackedKey);
-        return new RocksDBIterator(Iterator);
+        return scan(from, null);
+    }
+
+    /**
+     * Range with upper bound checked by RocksDB, so iteration stops inside RocksDB
+     * without reading records past the bound.
+     */
+    @NotNull
+    @Override
+    public Iterator<Record> range(@NotNull final ByteBuffer from,
+                                  @Nullable final ByteBuffer to) throws IOException {
+        if (to == null) {
+            return iterator(from);
+        }
+        if (from.compareTo(to) >= 0) {
+            return Iters.empty();
+        }
+        return scan(from, new Slice(ByteBufferUtils.shift(to)));
+    }
+
+    /**
+     * Range of records written with timestamp. Values are slices without RecordTimestamp header,
+     * timestamp of the current record is available from {@link RocksDBIterator#getTimestamp()}.
+     *
+     * @param from first key, inclusive
+     * @param to last key, exclusive, null for unbounded range
+     * @param withTombstones return tombstones as empty values, e.g. to hide older values of other replicas
+     * @return iterator to close after use
+     */
+    @NotNull
+    public RocksDBIterator rangeWithTimestamp(@NotNull final ByteBuffer from,
+                                              @Nullable final ByteBuffer to,
+                                              final boolean withTombstones) {
+        final Slice upperBound = to == null ? null : new Slice(ByteBufferUtils.shift(to));
+        return scan(from, upperBound).decodeTimestamps(withTombstones);
+    }
+
+    /**
+     * Keep a snapshot for pages of a paged scan.
+     *
+     * @param lease lease of the previous page, 0 for the first page
+     * @return the same lease if it is still alive, a new lease if it expired,
+     *     0 if leases are disabled or too many of them are taken
+     */
+    public long leaseSnapshot(final long lease) {
+        return snapshotLeases == null
+                ? SnapshotLeases.NO_LEASE
+                : snapshotLeases.renew(lease, System.currentTimeMillis());
+    }
+
+    /**
+     * Release snapshot of a paged scan after its last page.
+     *
+     * @param lease lease taken by {@link #leaseSnapshot(long)}
+     */
+    public void endSnapshotLease(final long lease) {
+        if (snapshotLeases != null) {
+            snapshotLeases.end(lease, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Range read from the leased snapshot, or from a snapshot taken now if the lease is not alive.
+     *
+     * @param from first key, inclusive
+     * @param to last key, exclusive, null for unbounded range
+     * @param lease lease taken by {@link #leaseSnapshot(long)}
+     * @return iterator to close after use
+     */
+    @NotNull
+    public RocksDBIterator range(@NotNull final ByteBuffer from,
+                                 @Nullable final ByteBuffer to,
+                                 final long lease) {
+        final Slice upperBound = to == null ? null : new Slice(ByteBufferUtils.shift(to));
+        final Snapshot snapshot = snapshotLeases == null ? null : snapshotLeases.acquire(lease);
+        if (snapshot == null) {
+            return scan(from, upperBound);
+        }
+        return scan(from, upperBound, snapshot, () -> snapshotLeases.release(lease));
+    }
+
+    /**
+     * Iterator pinned to a snapshot taken now, or tailing iterator if configured.
+     * Snapshot is released when the iterator is closed.
+     */
+    private RocksDBIterator scan(@NotNull final ByteBuffer from, @Nullable final Slice upperBound) {
+        final Snapshot snapshot = scanTailing ? null : db.getSnapshot();
+        return scan(from, upperBound, snapshot, () -> releaseSnapshot(snapshot));
+    }
+
+    private RocksDBIterator scan(@NotNull final ByteBuffer from,
+                                 @Nullable final Slice upperBound,
+                                 @Nullable final Snapshot snapshot,
+                                 @NotNull final Runnable release) {
+        final ReadOptions readOptions = new ReadOptions()
+                .setFillCache(scanFillCache)
+                .setTailing(snapshot == null && scanTailing);
+        if (snapshot != null) {
+            readOptions.setSnapshot(snapshot);
+        }
+        if (upperBound != null) {
+            readOptions.setIterateUpperBound(upperBound);
+        }
+        final RocksIterator iterator = db.newIterator(readOptions);
+        iterator.seek(ByteBufferUtils.shift(from));
+        return upperBound == null
+                ? new RocksDBIterator(iterator, open::get, release, readOptions)
+                : new RocksDBIterator(iterator, open::get, release, readOptions, upperBound);
+    }
+
+    private void releaseSnapshot(@Nullable final Snapshot snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        // close waits for the release, or the release sees the database closed
+        synchronized (open) {
+            if (open.get()) {
+                db.releaseSnapshot(snapshot);
+            }
+        }
     }
 
     @NotNull
     @Override
     public ByteBuffer get(@NotNull final ByteBuffer key) throws IOException,NoSuchElementException {
             try {
-                final byte[] unpackedKey = ByteBufferUtils.shift(key);
-                final byte[] valueByteArray = db.get(unpackedKey);
+                final byte[] unpackedKey = ByteBufferUtils.shiftToScratch(key);
+                final byte[] valueByteArray = db.get(unpackedKey, 0, key.remaining());
                 if (valueByteArray == null) {
                     throw new NoSuchElementException("Key is not present!");
                 }
@@ -70,9 +300,8 @@ public final class DAOImpl implements DAO {
     @Override
     public void upsert(@NotNull final ByteBuffer key, @NotNull final ByteBuffer value) throws IOException {
             try {
-                final byte[] unpackedKey = ByteBufferUtils.shift(key);
                 final byte[] arrayValue = ByteBufferUtils.fromByteToArray(value);
-                db.put(unpackedKey, arrayValue);
+                write(key, arrayValue);
             } catch (RocksDBException e) {
                 throw new IOException("can't upsert", e);
             }
@@ -81,8 +310,7 @@ public final class DAOImpl implements DAO {
     @Override
     public void remove(@NotNull final ByteBuffer key) throws IOException {
         try {
-            final byte[] unpackedKey = ByteBufferUtils.shift(key);
-            db.delete(unpackedKey);
+            write(key, null);
         }
         catch (RocksDBException e) {
             throw new IOException("can't remove", e);
@@ -97,14 +325,60 @@ public final class DAOImpl implements DAO {
     @NotNull
     public RecordTimestamp getWithTimestamp(@NotNull final ByteBuffer key) throws IOException, NoSuchElementException {
         try {
-            final byte[] unpackedKey = ByteBufferUtils.shift(key);
-            final byte[] valueByteArray = db.get(unpackedKey);
+            final byte[] unpackedKey = ByteBufferUtils.shiftToScratch(key);
+            final byte[] valueByteArray = db.get(unpackedKey, 0, key.remaining());
             return RecordTimestamp.fromBytes(valueByteArray);
         } catch (RocksDBException e) {
             throw new IOException("can't get /timestamp", e);
         }
     }
 
+    /**
+     * Get records with timestamp of several keys by one RocksDB multiGet.
+     *
+     * @param keys keys
+     * @return records in order of keys, missing ones for absent keys
+     */
+    @NotNull
+    public List<RecordTimestamp> getAllWithTimestamp(@NotNull final Collection<ByteBuffer> keys) throws IOException {
+        final List<byte[]> values = multiGet(keys);
+        final List<RecordTimestamp> records = new ArrayList<>(values.size());
+        for (final byte[] value : values) {
+            records.add(RecordTimestamp.fromBytes(value));
+        }
+        return records;
+    }
+
+    @NotNull
+    @Override
+    public Map<ByteBuffer, ByteBuffer> getAll(@NotNull final Collection<ByteBuffer> keys) throws IOException {
+        final List<byte[]> values = multiGet(keys);
+        final Map<ByteBuffer, ByteBuffer> result = new LinkedHashMap<>();
+        int i = 0;
+        for (final ByteBuffer key : keys) {
+            final byte[] value = values.get(i++);
+            if (value != null) {
+                result.put(key, ByteBuffer.wrap(value));
+            }
+        }
+        return result;
+    }
+
+    private List<byte[]> multiGet(@NotNull final Collection<ByteBuffer> keys) throws IOException {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        final List<byte[]> unpackedKeys = new ArrayList<>(keys.size());
+        for (final ByteBuffer key : keys) {
+            unpackedKeys.add(ByteBufferUtils.shift(key));
+        }
+        try {
+            return db.multiGetAsList(unpackedKeys);
+        } catch (RocksDBException e) {
+            throw new IOException("can't multi get", e);
+        }
+    }
+
     /**
      * Put record with timestamp.
      *
@@ -113,13 +387,51 @@ public final class DAOImpl implements DAO {
      */
     public void upsertWithTimestamp(@NotNull final ByteBuffer key,
                                     @NotNull final ByteBuffer value) throws IOException {
+        upsertWithTimestamp(key, value, System.currentTimeMillis());
+    }
+
+    /**
+     * Put record with timestamp assigned by coordinator.
+     *
+     * @param key key
+     * @param value  value
+     * @param timestamp timestamp of the record
+     */
+    public void upsertWithTimestamp(@NotNull final ByteBuffer key,
+                                    @NotNull final ByteBuffer value,
+                                    final long timestamp) throws IOException {
+        final Lock lock = timestampedWriteLock(key);
+        lock.lock();
         try {
-            final var record = RecordTimestamp.fromValue(value, System.currentTimeMillis());
-            final byte[] unpackedKey = ByteBufferUtils.shift(key);
-            final byte[] valueByteArray = record.toBytes();
-            db.put(unpackedKey, valueByteArray);
+            final var record = RecordTimestamp.fromValue(value, timestamp);
+            write(key, record.toBytes());
         } catch (RocksDBException e) {
             throw new IOException("can't upsert /timestamp", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write record pushed by read repair unless the stored record is as new or newer,
+     * so a late repair never overwrites a newer write.
+     *
+     * @param key key
+     * @param record value or tombstone with its original timestamp
+     */
+    public void repairWithTimestamp(@NotNull final ByteBuffer key,
+                                    @NotNull final RecordTimestamp record) throws IOException {
+        // exclusive, so no write of the key lands between the read and the write
+        final Lock lock = keyLocks.get(key).writeLock();
+        lock.lock();
+        try {
+            if (getWithTimestamp(key).getTimestamp() < record.getTimestamp()) {
+                write(key, record.toBytes());
+            }
+        } catch (RocksDBException e) {
+            throw new IOException("can't repair /timestamp", e);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -129,21 +441,176 @@ public final class DAOImpl implements DAO {
      * @param key key
      */
     public void removeWithTimestamp(@NotNull final ByteBuffer key) throws IOException {
-       try {
-            final var record = RecordTimestamp.tombstone(System.currentTimeMillis());
-            final byte[] unpackedKey = ByteBufferUtils.shift(key);
-            final byte[] valueByteArray = record.toBytes();
-            db.put(unpackedKey, valueByteArray);
+        removeWithTimestamp(key, System.currentTimeMillis());
+    }
+
+    /**
+     * Delete record with timestamp assigned by coordinator.
+     *
+     * @param key key
+     * @param timestamp timestamp of the tombstone
+     */
+    public void removeWithTimestamp(@NotNull final ByteBuffer key, final long timestamp) throws IOException {
+        final Lock lock = timestampedWriteLock(key);
+        lock.lock();
+        try {
+            final var record = RecordTimestamp.tombstone(timestamp);
+            write(key, record.toBytes());
         } catch (RocksDBException e) {
             throw new IOException("can't remove /timestamp", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void applyAll(@NotNull final List<Mutation> mutations) throws IOException {
+        writeBatch(mutations, mutation -> mutation.isRemove()
+                ? null
+                : ByteBufferUtils.fromByteToArray(mutation.getValue()));
+    }
+
+    /**
+     * Apply mutations as records with timestamp assigned by coordinator, in one RocksDB WriteBatch.
+     *
+     * @param mutations mutations, the last mutation of a key wins
+     * @param timestamp timestamp of all records
+     */
+    public void applyAllWithTimestamp(@NotNull final List<Mutation> mutations,
+                                      final long timestamp) throws IOException {
+        final List<Lock> locks = timestampedWriteLocks(mutations);
+        locks.forEach(Lock::lock);
+        try {
+            writeBatch(mutations, mutation -> mutation.isRemove()
+                    ? RecordTimestamp.tombstone(timestamp).toBytes()
+                    : RecordTimestamp.fromValue(mutation.getValue(), timestamp).toBytes());
+        } finally {
+            locks.forEach(Lock::unlock);
+        }
+    }
+
+    /**
+     * Write mutations atomically, null stored value deletes the key.
+     */
+    private void writeBatch(@NotNull final List<Mutation> mutations,
+                            @NotNull final Function<Mutation, byte[]> storedValue) throws IOException {
+        try (WriteBatch batch = new WriteBatch();
+             WriteOptions options = new WriteOptions()) {
+            for (final Mutation mutation : mutations) {
+                final byte[] key = ByteBufferUtils.shift(mutation.getKey());
+                final byte[] value = storedValue.apply(mutation);
+                if (value == null) {
+                    batch.delete(key);
+                } else {
+                    batch.put(key, value);
+                }
+            }
+            db.write(options, batch);
+        } catch (RocksDBException e) {
+            throw new IOException("can't apply batch", e);
+        }
+    }
+
+    private void write(@NotNull final ByteBuffer key,
+                       @Nullable final byte[] value) throws IOException, RocksDBException {
+        if (groupCommitter != null) {
+            // queued write outlives this call, so it owns a copy of the key
+            groupCommitter.write(ByteBufferUtils.shift(key), value);
+            return;
+        }
+        final byte[] unpackedKey = ByteBufferUtils.shiftToScratch(key);
+        if (value == null) {
+            db.delete(unpackedKey, 0, key.remaining());
+        } else {
+            db.put(unpackedKey, 0, key.remaining(), value, 0, value.length);
+        }
+    }
+
+    /**
+     * Shared lock of the key stripe to hold while writing timestamped record.
+     * Writers which read the stored record first take the exclusive one.
+     */
+    private Lock timestampedWriteLock(@NotNull final ByteBuffer key) {
+        return keyLocks.get(key).readLock();
+    }
+
+    /**
+     * Shared locks of the key stripes of a batch in stripe order.
+     */
+    private List<Lock> timestampedWriteLocks(@NotNull final List<Mutation> mutations) {
+        final List<ByteBuffer> keys = new ArrayList<>(mutations.size());
+        for (final Mutation mutation : mutations) {
+            keys.add(mutation.getKey());
+        }
+        final List<Lock> locks = new ArrayList<>(keys.size());
+        for (final ReadWriteLock lock : keyLocks.bulkGet(keys)) {
+            locks.add(lock.readLock());
+        }
+        return locks;
+    }
+
+    private void sweepTombstones() {
+        try {
+            if (tombstoneCollector != null) {
+                tombstoneCollector.sweep(System.currentTimeMillis());
+            }
+        } catch (IOException e) {
+            logger.error("tombstone sweep failed", e);
         }
     }
 
+    /**
+     * Amount of expired tombstones deleted since open.
+     *
+     * @return dropped tombstones, 0 if tombstone collection is disabled
+     */
+    public long getTombstonesDropped() {
+        return tombstoneCollector == null ? 0 : tombstoneCollector.getDropped();
+    }
+
+    /**
+     * Get statistics of group commit.
+     *
+     * @return stats or null if group commit is disabled
+     */
+    @Nullable
+    public GroupCommitStats getGroupCommitStats() {
+        return groupCommitter == null ? null : groupCommitter.getStats();
+    }
+
+    /**
+     * Hints of writes missed by other nodes.
+     *
+     * @return hint store
+     */
+    public HintStore getHints() {
+        return hints;
+    }
+
     @Override
     public void close() throws IOException {
+        synchronized (open) {
+            open.set(false);
+        }
+        if (tombstoneSweeper != null) {
+            tombstoneSweeper.shutdownNow();
+            try {
+                tombstoneSweeper.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (groupCommitter != null) {
+            groupCommitter.close();
+        }
+        if (snapshotLeases != null) {
+            snapshotLeases.close();
+        }
         try {
             db.syncWal();
+            families.forEach(ColumnFamilyHandle::close);
             db.close();
+            resources.forEach(RocksObject::close);
         } catch (RocksDBException e) {
             throw new IOException("Error while close", e);
         }
@@ -151,6 +618,9 @@ public final class DAOImpl implements DAO {
 
     @Override
     public void compact() throws IOException {
+        if (tombstoneCollector != null) {
+            tombstoneCollector.sweep(System.currentTimeMillis());
+        }
         try {
             db.compactRange();
         } catch (RocksDBException e) {
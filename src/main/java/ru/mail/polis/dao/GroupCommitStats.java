@@ -0,0 +1,70 @@
+package ru.mail.polis.dao;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Batch size and queue wait of group committed writes.
+ */
+public final class GroupCommitStats {
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final AtomicLong maxBatch = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+    void record(final int batchSize, final long totalWaitNanos, final long maxWaitNanos) {
+        batches.increment();
+        writes.add(batchSize);
+        queueWaitNanos.add(totalWaitNanos);
+        maxBatch.accumulateAndGet(batchSize, Math::max);
+        maxQueueWaitNanos.accumulateAndGet(maxWaitNanos, Math::max);
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    public long getMaxBatchSize() {
+        return maxBatch.get();
+    }
+
+    /**
+     * Average amount of writes in one batch.
+     *
+     * @return writes per batch
+     */
+    public double getAverageBatchSize() {
+        final long count = batches.sum();
+        return count == 0 ? 0 : (double) writes.sum() / count;
+    }
+
+    /**
+     * Average time between enqueue of a write and the start of its batch write.
+     *
+     * @return wait in microseconds
+     */
+    public long getAverageQueueWaitMicros() {
+        final long count = writes.sum();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(queueWaitNanos.sum() / count);
+    }
+
+    public long getMaxQueueWaitMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxQueueWaitNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return "batches=" + getBatches()
+                + " writes=" + getWrites()
+                + " avgBatch=" + getAverageBatchSize()
+                + " maxBatch=" + getMaxBatchSize()
+                + " avgWaitUs=" + getAverageQueueWaitMicros()
+                + " maxWaitUs=" + getMaxQueueWaitMicros();
+    }
+}
@@ -0,0 +1,192 @@
+package ru.mail.polis.dao;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects writes of concurrent callers into one WriteBatch.
+ * Batch is flushed when it is full or its first write waited for max delay.
+ */
+final class GroupCommitter implements Closeable {
+    private static final Log logger = LogFactory.getLog(GroupCommitter.class);
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final RocksDB db;
+    private final WriteOptions writeOptions;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final GroupCommitStats stats = new GroupCommitStats();
+    private final Thread flusher;
+    private final Object lock = new Object();
+    private volatile boolean running = true;
+
+    GroupCommitter(@NotNull final RocksDB db, @NotNull final DAOConfig config) {
+        this.db = db;
+        this.writeOptions = new WriteOptions().setSync(config.groupCommitSync);
+        this.maxBatch = config.groupCommitMaxBatch;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(config.groupCommitMaxDelayMicros);
+        this.flusher = new Thread(this::run, "group-commit");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Put value and wait until its batch is written.
+     *
+     * @param key encoded key
+     * @param value value, null for delete
+     */
+    void write(@NotNull final byte[] key, @Nullable final byte[] value) throws IOException {
+        final PendingWrite write = new PendingWrite(key, value);
+        synchronized (lock) {
+            if (!running) {
+                throw new IOException("group commit is closed");
+            }
+            queue.add(write);
+        }
+        try {
+            write.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for group commit");
+        } catch (ExecutionException e) {
+            throw new IOException("can't write batch", e.getCause());
+        }
+    }
+
+    GroupCommitStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Flush batches until closed. On exit no write is accepted anymore,
+     * and writes which are not flushed fail, so no caller waits forever.
+     */
+    private void run() {
+        final List<PendingWrite> batch = new ArrayList<>(maxBatch);
+        try {
+            while (running || !queue.isEmpty()) {
+                try {
+                    final PendingWrite first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    collect(batch, first.enqueuedNanos + maxDelayNanos);
+                    flush(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logger.error("group commit is interrupted, " + batch.size() + " writes are not flushed");
+                    break;
+                } catch (RuntimeException e) {
+                    logger.error("can't flush batch of " + batch.size(), e);
+                    fail(batch, new IOException("can't flush batch", e));
+                }
+                batch.clear();
+            }
+        } finally {
+            synchronized (lock) {
+                running = false;
+            }
+            queue.drainTo(batch);
+            fail(batch, new IOException("group commit is closed"));
+        }
+    }
+
+    private static void fail(final List<PendingWrite> writes, final IOException cause) {
+        for (final PendingWrite write : writes) {
+            write.done.completeExceptionally(cause);
+        }
+    }
+
+    private void collect(final List<PendingWrite> batch, final long deadline) throws InterruptedException {
+        queue.drainTo(batch, maxBatch - batch.size());
+        while (batch.size() < maxBatch) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            final PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            queue.drainTo(batch, maxBatch - batch.size());
+        }
+    }
+
+    private void flush(final List<PendingWrite> batch) {
+        final long start = System.nanoTime();
+        long totalWait = 0;
+        long maxWait = 0;
+        RocksDBException failure = null;
+        try (WriteBatch writeBatch = new WriteBatch()) {
+            for (final PendingWrite write : batch) {
+                final long wait = start - write.enqueuedNanos;
+                totalWait += wait;
+                maxWait = Math.max(maxWait, wait);
+                if (write.value == null) {
+                    writeBatch.delete(write.key);
+                } else {
+                    writeBatch.put(write.key, write.value);
+                }
+            }
+            db.write(writeOptions, writeBatch);
+        } catch (RocksDBException e) {
+            logger.error("can't write batch of " + batch.size(), e);
+            failure = e;
+        }
+        stats.record(batch.size(), totalWait, maxWait);
+        for (final PendingWrite write : batch) {
+            if (failure == null) {
+                write.done.complete(null);
+            } else {
+                write.done.completeExceptionally(failure);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            running = false;
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while closing group commit");
+        }
+        writeOptions.close();
+    }
+
+    private static final class PendingWrite {
+        private final byte[] key;
+        private final byte[] value;
+        private final long enqueuedNanos = System.nanoTime();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        PendingWrite(final byte[] key, final byte[] value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ru.mail.polis.dao;
+
+import org.jetbrains.annotations.NotNull;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+
+import ru.mail.polis.Record;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes which other nodes missed while they were unreachable, kept in a separate column family
+ * until they are handed off. Only the newest hint of a key is kept for a node.
+ * Hint key is the node, zero byte and the key, hint value is the timestamped record.
+ */
+public final class HintStore {
+    static final byte[] COLUMN_FAMILY = "hints".getBytes(StandardCharsets.UTF_8);
+
+    private final RocksDB db;
+    private final ColumnFamilyHandle family;
+
+    HintStore(@NotNull final RocksDB db, @NotNull final ColumnFamilyHandle family) {
+        this.db = db;
+        this.family = family;
+    }
+
+    private static byte[] prefix(@NotNull final String node) {
+        final byte[] id = node.getBytes(StandardCharsets.UTF_8);
+        return Arrays.copyOf(id, id.length + 1);
+    }
+
+    private static byte[] hintKey(@NotNull final String node, @NotNull final ByteBuffer key) {
+        final byte[] prefix = prefix(node);
+        final byte[] hintKey = Arrays.copyOf(prefix, prefix.length + key.remaining());
+        key.duplicate().get(hintKey, prefix.length, key.remaining());
+        return hintKey;
+    }
+
+    /**
+     * Keep a write for the node unless it already has a newer hint of the key.
+     *
+     * @param node node which missed the write
+     * @param key key
+     * @param record value or tombstone with timestamp of the write
+     */
+    public synchronized void add(@NotNull final String node,
+                                 @NotNull final ByteBuffer key,
+                                 @NotNull final RecordTimestamp record) throws IOException {
+        final byte[] hintKey = hintKey(node, key);
+        try {
+            final byte[] stored = db.get(family, hintKey);
+            if (stored == null || RecordTimestamp.timestampOf(stored) < record.getTimestamp()) {
+                db.put(family, hintKey, record.toBytes());
+            }
+        } catch (RocksDBException e) {
+            throw new IOException("can't add hint", e);
+        }
+    }
+
+    /**
+     * First hints of the node in order of keys.
+     *
+     * @param node node
+     * @param limit max amount of hints
+     * @return records of keys and timestamped records
+     */
+    public List<Record> get(@NotNull final String node, final int limit) {
+        final byte[] prefix = prefix(node);
+        final List<Record> hints = new ArrayList<>();
+        try (RocksIterator iterator = db.newIterator(family)) {
+            iterator.seek(prefix);
+            while (hints.size() < limit && iterator.isValid() && startsWith(iterator.key(), prefix)) {
+                final byte[] hintKey = iterator.key();
+                final ByteBuffer key = ByteBuffer.wrap(hintKey, prefix.length, hintKey.length - prefix.length).slice();
+                hints.add(Record.of(key, ByteBuffer.wrap(iterator.value())));
+                iterator.next();
+            }
+        }
+        return hints;
+    }
+
+    /**
+     * Drop the handed off hint unless a newer write of the key was hinted meanwhile.
+     *
+     * @param node node which got the write
+     * @param key key
+     * @param timestamp timestamp of the handed off record
+     */
+    public synchronized void remove(@NotNull final String node,
+                                    @NotNull final ByteBuffer key,
+                                    final long timestamp) throws IOException {
+        final byte[] hintKey = hintKey(node, key);
+        try {
+            final byte[] stored = db.get(family, hintKey);
+            if (stored != null && RecordTimestamp.timestampOf(stored) == timestamp) {
+                db.delete(family, hintKey);
+            }
+        } catch (RocksDBException e) {
+            throw new IOException("can't remove hint", e);
+        }
+    }
+
+    private static boolean startsWith(@NotNull final byte[] bytes, @NotNull final byte[] prefix) {
+        return bytes.length >= prefix.length
+                && Arrays.equals(bytes, 0, prefix.length, prefix, 0, prefix.length);
+    }
+}
@@ -0,0 +1,50 @@
+package ru.mail.polis.dao;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Upsert or remove of one key in a batch.
+ */
+public final class Mutation {
+    private final ByteBuffer key;
+    @Nullable
+    private final ByteBuffer value;
+
+    private Mutation(@NotNull final ByteBuffer key, @Nullable final ByteBuffer value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    public static Mutation upsert(@NotNull final ByteBuffer key, @NotNull final ByteBuffer value) {
+        return new Mutation(key, value);
+    }
+
+    public static Mutation remove(@NotNull final ByteBuffer key) {
+        return new Mutation(key, null);
+    }
+
+    @NotNull
+    public ByteBuffer getKey() {
+        return key;
+    }
+
+    public boolean isRemove() {
+        return value == null;
+    }
+
+    /**
+     * Get value to upsert.
+     *
+     * @return value
+     */
+    @NotNull
+    public ByteBuffer getValue() {
+        if (value == null) {
+            throw new IllegalStateException("no value in remove");
+        }
+        return value;
+    }
+}
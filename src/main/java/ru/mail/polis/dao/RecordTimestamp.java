@@ -7,6 +7,8 @@ import java.util.List;
 import java.util.Comparator;
 
 public class RecordTimestamp {
+    static final int HEADER_SIZE = 1 + Long.BYTES;
+
     private final long timestamp;
     private final ByteBuffer value;
     private final TypeOfRecord type;
@@ -84,12 +86,46 @@ public class RecordTimestamp {
         if (bytes == null){
             return new RecordTimestamp(null, -1, TypeOfRecord.MISSING);
         }
-        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return fromByteBuffer(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Create record from bytes without copying them, e.g. from read-only value of {@link ru.mail.polis.Record}.
+     *
+     * @param bytes original value, its position is not changed
+     * @return timestamp record instance sharing the value with bytes
+     */
+    public static RecordTimestamp fromByteBuffer(@NotNull final ByteBuffer bytes) {
+        final ByteBuffer buffer = bytes.duplicate();
         final TypeOfRecord type = TypeOfRecord.fromValue(buffer.get());
         final long timestamp = buffer.getLong();
         return new RecordTimestamp(buffer, timestamp, type);
     }
 
+    /**
+     * Check record bytes without decoding them.
+     *
+     * @param bytes record bytes
+     * @return true if bytes hold a value, not a tombstone
+     */
+    static boolean isValue(@NotNull final byte[] bytes) {
+        return bytes.length >= HEADER_SIZE && bytes[0] == TypeOfRecord.VALUE.value;
+    }
+
+    /**
+     * Value of record bytes without copying them.
+     *
+     * @param bytes record bytes
+     * @return value sharing array with bytes, empty for tombstone
+     */
+    static ByteBuffer valueOf(@NotNull final byte[] bytes) {
+        return ByteBuffer.wrap(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE).slice();
+    }
+
+    static long timestampOf(@NotNull final byte[] bytes) {
+        return ByteBuffer.wrap(bytes).getLong(1);
+    }
+
     /**
      * Get value of record.
      *
@@ -138,6 +174,15 @@ public class RecordTimestamp {
         return bytes;
     }
 
+    /**
+     * Record without value, replicas compare versions by it without sending values.
+     *
+     * @return record of the same type and timestamp with empty value
+     */
+    public RecordTimestamp toDigest() {
+        return isValue() ? fromValue(ByteBuffer.allocate(0), timestamp) : this;
+    }
+
     public static RecordTimestamp fromValue(@NotNull final ByteBuffer value, final long timestamp) {
         return new RecordTimestamp(value, timestamp,TypeOfRecord.VALUE);
     }
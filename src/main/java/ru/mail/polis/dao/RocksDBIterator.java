@@ -1,7 +1,9 @@
 package ru.mail.polis.dao;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import org.rocksdb.AbstractNativeReference;
 import org.rocksdb.RocksIterator;
 
 import ru.mail.polis.Record;
@@ -9,35 +11,145 @@ import ru.mail.polis.Record;
 import java.io.Closeable;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.function.BooleanSupplier;
 
 public class RocksDBIterator implements Iterator<Record>, Closeable {
     private final RocksIterator iterator;
+    private final BooleanSupplier dbOpen;
+    private final Runnable onClose;
+    private final AbstractNativeReference[] resources;
+    private boolean closed;
+    private boolean timestamped;
+    private boolean tombstones;
+    @Nullable
+    private byte[] pendingValue;
+    @Nullable
+    private byte[] lastValue;
 
-    public RocksDBIterator(@NotNull final RocksIterator iterator) {
+    /**
+     * Iterator over RocksDB records.
+     *
+     * @param iterator positioned RocksDB iterator
+     * @param dbOpen whether the database is still open, native objects are not touched after it is closed
+     * @param onClose action run after the iterator is closed, e.g. snapshot release
+     * @param resources objects used by iterator, closed after it in given order
+     */
+    public RocksDBIterator(@NotNull final RocksIterator iterator,
+                           @NotNull final BooleanSupplier dbOpen,
+                           @NotNull final Runnable onClose,
+                           @NotNull final AbstractNativeReference... resources) {
         this.iterator = iterator;
+        this.dbOpen = dbOpen;
+        this.onClose = onClose;
+        this.resources = resources.clone();
+    }
+
+    /**
+     * Switch to values written with timestamp: values are returned without RecordTimestamp header,
+     * and timestamp is decoded only by {@link #getTimestamp()}.
+     *
+     * @param withTombstones return tombstones as empty values instead of skipping them,
+     *     {@link #isTombstone()} tells them apart
+     * @return this iterator
+     */
+    RocksDBIterator decodeTimestamps(final boolean withTombstones) {
+        this.timestamped = true;
+        this.tombstones = withTombstones;
+        return this;
     }
 
     @Override
     public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (timestamped) {
+            skipTombstones();
+        }
         return iterator.isValid();
     }
 
+    private void skipTombstones() {
+        while (pendingValue == null && iterator.isValid()) {
+            final byte[] value = iterator.value();
+            if (tombstones || RecordTimestamp.isValue(value)) {
+                pendingValue = value;
+                return;
+            }
+            iterator.next();
+        }
+    }
+
     @Override
     public Record next() {
         if (!hasNext()) {
             throw new IllegalStateException("RocksDBIterator error");
         }
         final var keyByteArray = iterator.key();
-        final ByteBuffer packedKey = ByteBufferUtils.revShift(keyByteArray);
-        final var valueByteArray = iterator.value();
-        final var value = ByteBuffer.wrap(valueByteArray);
-        final var record = Record.of(packedKey, value);
+        final ByteBuffer packedKey = ByteBufferUtils.revShiftInPlace(keyByteArray);
+        final Record record;
+        if (timestamped) {
+            lastValue = pendingValue;
+            pendingValue = null;
+            record = Record.of(packedKey, RecordTimestamp.valueOf(lastValue));
+        } else {
+            record = Record.of(packedKey, ByteBuffer.wrap(iterator.value()));
+        }
         iterator.next();
         return record;
     }
 
+    /**
+     * Timestamp of the record returned by the last {@link #next()} call in timestamp mode.
+     *
+     * @return timestamp of the record
+     */
+    public long getTimestamp() {
+        return RecordTimestamp.timestampOf(lastTimestamped());
+    }
+
+    /**
+     * Check the record returned by the last {@link #next()} call in timestamp mode with tombstones.
+     *
+     * @return true if the record is a tombstone, its value is empty
+     */
+    public boolean isTombstone() {
+        return !RecordTimestamp.isValue(lastTimestamped());
+    }
+
+    /**
+     * Record returned by the last {@link #next()} call in timestamp mode, with its timestamp.
+     *
+     * @return value sharing array with the returned record, or tombstone
+     */
+    public RecordTimestamp getRecordTimestamp() {
+        final byte[] bytes = lastTimestamped();
+        final long timestamp = RecordTimestamp.timestampOf(bytes);
+        return RecordTimestamp.isValue(bytes)
+                ? RecordTimestamp.fromValue(RecordTimestamp.valueOf(bytes), timestamp)
+                : RecordTimestamp.tombstone(timestamp);
+    }
+
+    private byte[] lastTimestamped() {
+        if (lastValue == null) {
+            throw new IllegalStateException("no timestamped record");
+        }
+        return lastValue;
+    }
+
     @Override
     public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        onClose.run();
+        if (!dbOpen.getAsBoolean()) {
+            return;
+        }
         iterator.close();
+        for (final AbstractNativeReference resource : resources) {
+            resource.close();
+        }
     }
 }
@@ -0,0 +1,117 @@
+package ru.mail.polis.dao;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.rocksdb.RocksDB;
+import org.rocksdb.Snapshot;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Snapshots kept alive between pages of a paged range scan, so the pages see the same data.
+ * A lease expires when it is not used for ttl, snapshots pin old versions of records
+ * and keep compaction from dropping them, so the amount of leases is limited.
+ */
+final class SnapshotLeases {
+    static final long NO_LEASE = 0;
+
+    private final RocksDB db;
+    private final long ttlMillis;
+    private final int maxLeases;
+    private final Map<Long, Lease> leases = new HashMap<>();
+    private long lastId;
+
+    SnapshotLeases(@NotNull final RocksDB db, final long ttlMillis, final int maxLeases) {
+        this.db = db;
+        this.ttlMillis = ttlMillis;
+        this.maxLeases = maxLeases;
+    }
+
+    /**
+     * Renew lease or take a new one if it expired.
+     *
+     * @param id lease from previous page or {@link #NO_LEASE}
+     * @param now current time in millis
+     * @return live lease or {@link #NO_LEASE} if too many leases are taken
+     */
+    synchronized long renew(final long id, final long now) {
+        expire(now);
+        final Lease lease = leases.get(id);
+        if (lease != null) {
+            lease.expiresAt = now + ttlMillis;
+            return id;
+        }
+        if (leases.size() >= maxLeases) {
+            return NO_LEASE;
+        }
+        lastId++;
+        leases.put(lastId, new Lease(db.getSnapshot(), now + ttlMillis));
+        return lastId;
+    }
+
+    /**
+     * Use leased snapshot until {@link #release(long)}, so it doesn't expire while in use.
+     *
+     * @param id lease
+     * @return snapshot or null if lease is not alive
+     */
+    @Nullable
+    synchronized Snapshot acquire(final long id) {
+        final Lease lease = leases.get(id);
+        if (lease == null) {
+            return null;
+        }
+        lease.users++;
+        return lease.snapshot;
+    }
+
+    synchronized void release(final long id) {
+        final Lease lease = leases.get(id);
+        if (lease != null) {
+            lease.users--;
+        }
+    }
+
+    /**
+     * End lease of a scan which has no more pages, its snapshot is released once it is not in use.
+     *
+     * @param id lease
+     * @param now current time in millis
+     */
+    synchronized void end(final long id, final long now) {
+        final Lease lease = leases.get(id);
+        if (lease != null) {
+            lease.expiresAt = Long.MIN_VALUE;
+        }
+        expire(now);
+    }
+
+    synchronized void close() {
+        leases.values().forEach(lease -> db.releaseSnapshot(lease.snapshot));
+        leases.clear();
+    }
+
+    private void expire(final long now) {
+        final Iterator<Lease> iterator = leases.values().iterator();
+        while (iterator.hasNext()) {
+            final Lease lease = iterator.next();
+            if (lease.users == 0 && lease.expiresAt < now) {
+                db.releaseSnapshot(lease.snapshot);
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class Lease {
+        private final Snapshot snapshot;
+        private long expiresAt;
+        private int users;
+
+        Lease(@NotNull final Snapshot snapshot, final long expiresAt) {
+            this.snapshot = snapshot;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
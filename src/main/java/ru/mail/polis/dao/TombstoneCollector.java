@@ -0,0 +1,98 @@
+package ru.mail.polis.dao;
+
+import com.google.common.util.concurrent.Striped;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jetbrains.annotations.NotNull;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.Snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Deletes {@link RecordTimestamp} tombstones older than grace period.
+ * The RocksDB delete markers left by the sweep are dropped by compaction.
+ * Timestamped writes hold the read lock of their key stripe, so a value written
+ * after the tombstone was checked can not be removed by the sweep.
+ */
+final class TombstoneCollector {
+    private static final Log logger = LogFactory.getLog(TombstoneCollector.class);
+
+    private final RocksDB db;
+    private final long gracePeriodMillis;
+    private final Striped<ReadWriteLock> locks;
+    private final AtomicLong dropped = new AtomicLong();
+
+    TombstoneCollector(@NotNull final RocksDB db,
+                       final long gracePeriodMillis,
+                       @NotNull final Striped<ReadWriteLock> locks) {
+        this.db = db;
+        this.gracePeriodMillis = gracePeriodMillis;
+        this.locks = locks;
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Delete expired tombstones.
+     *
+     * @param now current time in millis
+     * @return amount of tombstones deleted by this sweep
+     */
+    long sweep(final long now) throws IOException {
+        final long expiredBefore = now - gracePeriodMillis;
+        long count = 0;
+        final Snapshot snapshot = db.getSnapshot();
+        try (ReadOptions options = new ReadOptions().setSnapshot(snapshot).setFillCache(false);
+             RocksIterator iterator = db.newIterator(options)) {
+            for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+                if (isExpired(iterator.value(), expiredBefore)) {
+                    count += delete(iterator.key(), expiredBefore);
+                }
+            }
+        } catch (RocksDBException e) {
+            throw new IOException("can't sweep tombstones", e);
+        } finally {
+            db.releaseSnapshot(snapshot);
+        }
+        dropped.addAndGet(count);
+        if (count > 0) {
+            logger.info("dropped " + count + " tombstones older than " + gracePeriodMillis + " ms");
+        }
+        return count;
+    }
+
+    private int delete(final byte[] unpackedKey, final long expiredBefore) throws RocksDBException {
+        final ByteBuffer key = ByteBufferUtils.revShiftInPlace(Arrays.copyOf(unpackedKey, unpackedKey.length));
+        final Lock lock = locks.get(key).writeLock();
+        lock.lock();
+        try {
+            // value may have been overwritten since the snapshot
+            if (!isExpired(db.get(unpackedKey), expiredBefore)) {
+                return 0;
+            }
+            db.delete(unpackedKey);
+            return 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean isExpired(final byte[] value, final long expiredBefore) {
+        if (value == null || value.length != RecordTimestamp.HEADER_SIZE) {
+            return false;
+        }
+        final RecordTimestamp record = RecordTimestamp.fromBytes(value);
+        return record.isDeleted() && record.getTimestamp() < expiredBefore;
+    }
+}
@@ -0,0 +1,129 @@
+package ru.mail.polis.service;
+
+/**
+ * Tuning of HTTP {@link Service}.
+ */
+public class ServiceConfig {
+    /**
+     * Requests waiting for a worker, requests beyond it are rejected with 503.
+     */
+    public int workQueueCapacity = 1024;
+
+    /**
+     * Workers of client requests.
+     */
+    public int clientThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Workers of replica requests sent by other nodes, separate from client workers
+     * so client bursts don't starve replication.
+     */
+    public int replicaThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Replica requests waiting for a worker, requests beyond it are rejected.
+     */
+    public int replicaQueueCapacity = 1024;
+
+    /**
+     * Timeout of connecting to other node.
+     */
+    public long peerConnectTimeoutMillis = 100;
+
+    /**
+     * Timeout of a whole request to other node from connecting to the response headers,
+     * batches have longer timeout.
+     */
+    public long peerTimeoutMillis = 500;
+
+    /**
+     * Requests in flight to every other node, requests beyond it fail at once.
+     */
+    public int peerMaxInFlight = 256;
+
+    /**
+     * Port of binary replication protocol of every node is its HTTP port plus this offset,
+     * GET, PUT and DELETE of replicas go over it instead of HTTP. 0 disables the protocol,
+     * all nodes of a cluster must have the same offset.
+     */
+    public int replicationPortOffset;
+
+    /**
+     * Quorum reads get the full value from one replica, the local one if possible,
+     * and only type and timestamp from the others. The value is fetched once more
+     * only if other replica has a newer version.
+     */
+    public boolean digestReads;
+
+    /**
+     * Quorum reads start on acks replicas only, a read slower than hedgePercentile of latency
+     * of its replica is sent to one more replica, the first replies win.
+     */
+    public boolean hedgedReads;
+
+    /**
+     * Percentile of recent latency of a replica after which its read is hedged, from 0 to 1.
+     */
+    public double hedgePercentile = 0.95;
+
+    /**
+     * Probability of read repair after a quorum read found stale replicas, from 0 to 1.
+     * The newest record is pushed to them with its original timestamp in background.
+     */
+    public double readRepairChance;
+
+    /**
+     * Workers of read repair, they wait for repaired replicas.
+     */
+    public int repairThreads = 1;
+
+    /**
+     * Repairs waiting for a worker, repairs beyond it are dropped.
+     */
+    public int repairQueueCapacity = 1024;
+
+    /**
+     * Keep hints of writes which failed on other replicas in the local hint store,
+     * and hand them off when the replicas are reachable again.
+     */
+    public boolean hintedHandoff;
+
+    /**
+     * How often hints are handed off.
+     */
+    public long hintReplayIntervalMillis = 1000;
+
+    /**
+     * Max hints handed off to every node in one round, throttles hand off after a long downtime.
+     */
+    public int hintReplayBatch = 100;
+
+    /**
+     * Run requests on virtual threads on JDK 21+, blocked calls to RocksDB
+     * don't hold platform threads, so pools are sized by virtualThreadsPerPool instead of CPUs.
+     * Ignored with a warning on older JDK.
+     */
+    public boolean virtualThreads;
+
+    /**
+     * Max requests in flight of every pool in virtual thread mode.
+     */
+    public int virtualThreadsPerPool = 1024;
+
+    /**
+     * Requests waited for a worker longer than this are dropped with 503,
+     * client has likely given up on them already.
+     */
+    public long maxQueueTimeMillis = 100;
+
+    /**
+     * Replica requests waited for a worker longer than this are dropped. Their coordinator
+     * waits up to its peer timeout, so the limit is not shared with client requests.
+     */
+    public long replicaMaxQueueTimeMillis = 500;
+
+    /**
+     * Value of Retry-After header of 503 responses.
+     */
+    public int retryAfterSeconds = 1;
+}
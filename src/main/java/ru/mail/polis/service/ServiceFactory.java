@@ -50,6 +50,24 @@ public final class ServiceFactory {
             final int port,
             @NotNull final DAO dao,
             @NotNull final Set<String> topology) throws IOException {
+        return create(port, dao, topology, new ServiceConfig());
+    }
+
+    /**
+     * Construct a storage instance.
+     *
+     * @param port     port to bind HTTP server to
+     * @param dao      DAO to store the data
+     * @param topology a list of all cluster endpoints {@code http://<host>:<port>} (including this one)
+     * @param config   service tuning
+     * @return a storage instance
+     */
+    @NotNull
+    public static Service create(
+            final int port,
+            @NotNull final DAO dao,
+            @NotNull final Set<String> topology,
+            @NotNull final ServiceConfig config) throws IOException {
         if (Runtime.getRuntime().maxMemory() > MAX_HEAP) {
             throw new IllegalStateException("The heap is too big. Consider setting Xmx.");
         }
@@ -58,6 +76,6 @@ public final class ServiceFactory {
             throw new IllegalArgumentException("Port out of range");
         }
         final ClustersNodes nodes = new ClustersNodes(topology, "http://localhost:" + port);
-        return ServiceImpl.create(port, dao, nodes);
+        return ServiceImpl.create(port, dao, nodes, config);
     }
 }
@@ -0,0 +1,22 @@
+package ru.mail.polis.service.luckydaemon;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Iterator whose next element may be still in flight, e.g. fetched from other node.
+ * {@link StreamSession} waits for it instead of blocking the selector thread in hasNext().
+ *
+ * @param <E> type of elements
+ */
+interface AsyncIterator<E> extends Iterator<E> {
+    /**
+     * Check if hasNext() and next() can be called without blocking.
+     *
+     * @return null if they don't block, otherwise future completed when data arrives
+     */
+    @Nullable
+    CompletableFuture<?> whenReady();
+}
@@ -0,0 +1,172 @@
+package ru.mail.polis.service.luckydaemon;
+
+import com.google.common.base.Charsets;
+import org.jetbrains.annotations.NotNull;
+import ru.mail.polis.dao.Mutation;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bodies of batch requests: ids separated by new lines,
+ * frames of 4-byte length followed by bytes between nodes,
+ * and mutations of batch writes.
+ */
+final class BatchFrames {
+    static final byte UPSERT = 1;
+    static final byte REMOVE = 0;
+
+    private BatchFrames() {
+        // Not instantiable
+    }
+
+    /**
+     * Parse ids of batch request.
+     *
+     * @param body ids separated by '\n', empty lines are skipped
+     * @return distinct ids in order of the body
+     */
+    static List<String> ids(@NotNull final byte[] body) {
+        final Set<String> ids = new LinkedHashSet<>();
+        for (final String id : new String(body, Charsets.UTF_8).split("\n")) {
+            if (!id.isEmpty()) {
+                ids.add(id);
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * Join ids into body of batch request.
+     *
+     * @param ids ids without '\n'
+     * @return request body
+     */
+    static byte[] joinIds(@NotNull final List<String> ids) {
+        return String.join("\n", ids).getBytes(Charsets.UTF_8);
+    }
+
+    /**
+     * Pack frames into one body.
+     *
+     * @param frames frames to pack
+     * @return body
+     */
+    static byte[] encode(@NotNull final List<byte[]> frames) {
+        int size = 0;
+        for (final byte[] frame : frames) {
+            size += Integer.BYTES + frame.length;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (final byte[] frame : frames) {
+            buffer.putInt(frame.length).put(frame);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Unpack frames of a body.
+     *
+     * @param body packed frames
+     * @return frames in order of the body
+     * @throws IOException if body is truncated
+     */
+    static List<byte[]> decode(@NotNull final byte[] body) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(body);
+        final List<byte[]> frames = new ArrayList<>();
+        try {
+            while (buffer.hasRemaining()) {
+                final byte[] frame = new byte[checkedLength(buffer)];
+                buffer.get(frame);
+                frames.add(frame);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("broken batch frames", e);
+        }
+        return frames;
+    }
+
+    /**
+     * Pack mutations: operation byte, key frame and value frame for upsert.
+     *
+     * @param mutations mutations to pack
+     * @return body
+     */
+    static byte[] encodeMutations(@NotNull final List<Mutation> mutations) {
+        int size = 0;
+        for (final Mutation mutation : mutations) {
+            size += 1 + Integer.BYTES + mutation.getKey().remaining();
+            if (!mutation.isRemove()) {
+                size += Integer.BYTES + mutation.getValue().remaining();
+            }
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (final Mutation mutation : mutations) {
+            buffer.put(mutation.isRemove() ? REMOVE : UPSERT);
+            putFrame(buffer, mutation.getKey());
+            if (!mutation.isRemove()) {
+                putFrame(buffer, mutation.getValue());
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Unpack mutations of a body, keys and values share the body array.
+     *
+     * @param body packed mutations
+     * @return mutations in order of the body
+     * @throws IOException if body is truncated, has unknown operation or empty key
+     */
+    static List<Mutation> decodeMutations(@NotNull final byte[] body) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(body);
+        final List<Mutation> mutations = new ArrayList<>();
+        try {
+            while (buffer.hasRemaining()) {
+                final byte operation = buffer.get();
+                final ByteBuffer key = getFrame(buffer);
+                if (!key.hasRemaining()) {
+                    throw new IOException("empty key in batch");
+                }
+                if (operation == UPSERT) {
+                    mutations.add(Mutation.upsert(key, getFrame(buffer)));
+                } else if (operation == REMOVE) {
+                    mutations.add(Mutation.remove(key));
+                } else {
+                    throw new IOException("unknown batch operation " + operation);
+                }
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("broken batch mutations", e);
+        }
+        return mutations;
+    }
+
+    private static void putFrame(final ByteBuffer buffer, final ByteBuffer frame) {
+        buffer.putInt(frame.remaining()).put(frame.duplicate());
+    }
+
+    private static ByteBuffer getFrame(final ByteBuffer buffer) {
+        final int length = checkedLength(buffer);
+        final ByteBuffer frame = buffer.slice();
+        frame.limit(length);
+        buffer.position(buffer.position() + length);
+        return frame;
+    }
+
+    /**
+     * Read length of the next frame, it comes from a peer, so it is checked before anything is allocated.
+     */
+    private static int checkedLength(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return length;
+    }
+}
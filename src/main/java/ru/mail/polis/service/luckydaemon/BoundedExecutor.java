@@ -0,0 +1,78 @@
+package ru.mail.polis.service.luckydaemon;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed pool with bounded queue. Full queue rejects tasks at once, and {@link Expirable} tasks
+ * that waited in the queue longer than max queue time are expired instead of being run,
+ * so overload is reported to clients instead of growing latency of every request.
+ */
+final class BoundedExecutor extends ThreadPoolExecutor {
+    private final long maxQueueTimeNanos;
+    private final WorkQueueStats stats;
+
+    /**
+     * Task which can be told that it won't run.
+     */
+    interface Expirable extends Runnable {
+        void expire();
+    }
+
+    BoundedExecutor(@NotNull final String nameFormat,
+                    final int threads,
+                    final int capacity,
+                    final long maxQueueTimeMillis) {
+        this(new ThreadFactoryBuilder().setNameFormat(nameFormat).build(), threads, capacity, maxQueueTimeMillis);
+    }
+
+    BoundedExecutor(@NotNull final ThreadFactory threadFactory,
+                    final int threads,
+                    final int capacity,
+                    final long maxQueueTimeMillis) {
+        super(threads, threads, 1L, TimeUnit.MINUTES, new ArrayBlockingQueue<>(capacity), threadFactory);
+        this.maxQueueTimeNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueTimeMillis);
+        this.stats = new WorkQueueStats(getQueue());
+    }
+
+    @Override
+    public void execute(@NotNull final Runnable command) {
+        final long enqueued = System.nanoTime();
+        stats.submitted();
+        try {
+            super.execute(() -> runOrExpire(command, enqueued));
+        } catch (RejectedExecutionException e) {
+            stats.rejected();
+            throw e;
+        }
+    }
+
+    /**
+     * Check if new tasks are likely to be rejected.
+     *
+     * @return true if the queue is full
+     */
+    boolean isSaturated() {
+        return getQueue().remainingCapacity() == 0;
+    }
+
+    WorkQueueStats getStats() {
+        return stats;
+    }
+
+    private void runOrExpire(@NotNull final Runnable command, final long enqueued) {
+        if (command instanceof Expirable && System.nanoTime() - enqueued > maxQueueTimeNanos) {
+            stats.expired();
+            ((Expirable) command).expire();
+            return;
+        }
+        command.run();
+    }
+}
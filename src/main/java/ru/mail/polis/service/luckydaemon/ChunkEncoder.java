@@ -0,0 +1,147 @@
+package ru.mail.polis.service.luckydaemon;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import ru.mail.polis.Record;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Encodes records as HTTP chunks {@code key '\n' value}, many chunks per buffer, so a stream
+ * makes one socket write per buffer instead of one per record. Buffers are pooled among sessions.
+ * A buffer left in the socket queue of a session is owned by the session until it is written,
+ * so such buffer is dropped instead of being reused.
+ */
+final class ChunkEncoder {
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int POOL_SIZE = 64;
+    private static final BlockingQueue<byte[]> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final byte[] HEX = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final int CRLF_LENGTH = 2;
+
+    private final int bufferSize;
+    @Nullable
+    private byte[] buffer;
+    private int length;
+
+    ChunkEncoder(final int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Append record to the buffer.
+     *
+     * @param record record to encode
+     * @return false if the record does not fit into the rest of the buffer
+     */
+    boolean append(@NotNull final Record record) {
+        final ByteBuffer key = record.getKey();
+        final ByteBuffer value = record.getValue();
+        final int payload = key.remaining() + 1 + value.remaining();
+        if (length + chunkLength(payload) > bufferSize) {
+            return false;
+        }
+        if (buffer == null) {
+            buffer = acquire(bufferSize);
+        }
+        length = put(buffer, length, key, value, payload);
+        return true;
+    }
+
+    boolean isEmpty() {
+        return length == 0;
+    }
+
+    @NotNull
+    byte[] array() {
+        assert buffer != null;
+        return buffer;
+    }
+
+    int length() {
+        return length;
+    }
+
+    /**
+     * Start a new buffer after the current one was written to the session.
+     *
+     * @param queued true if the session holds the buffer in its write queue
+     */
+    void written(final boolean queued) {
+        length = 0;
+        if (queued) {
+            buffer = null;
+        }
+    }
+
+    /**
+     * Return the buffer to the pool after the stream.
+     *
+     * @param queued true if the session still holds the buffer in its write queue
+     */
+    void release(final boolean queued) {
+        final byte[] released = buffer;
+        buffer = null;
+        length = 0;
+        if (released != null && !queued) {
+            POOL.offer(released);
+        }
+    }
+
+    /**
+     * Encode record that is too big for a buffer.
+     *
+     * @param record record to encode
+     * @return array with one chunk
+     */
+    static byte[] encode(@NotNull final Record record) {
+        final ByteBuffer key = record.getKey();
+        final ByteBuffer value = record.getValue();
+        final int payload = key.remaining() + 1 + value.remaining();
+        final byte[] chunk = new byte[chunkLength(payload)];
+        put(chunk, 0, key, value, payload);
+        return chunk;
+    }
+
+    private static byte[] acquire(final int size) {
+        final byte[] pooled = POOL.poll();
+        return pooled != null && pooled.length == size ? pooled : new byte[size];
+    }
+
+    private static int chunkLength(final int payload) {
+        return hexDigits(payload) + CRLF_LENGTH + payload + CRLF_LENGTH;
+    }
+
+    private static int hexDigits(final int value) {
+        return Math.max(1, (Integer.SIZE - Integer.numberOfLeadingZeros(value) + 3) / 4);
+    }
+
+    private static int put(final byte[] dst,
+                           final int offset,
+                           final ByteBuffer key,
+                           final ByteBuffer value,
+                           final int payload) {
+        int position = offset;
+        for (int shift = (hexDigits(payload) - 1) * 4; shift >= 0; shift -= 4) {
+            dst[position++] = HEX[(payload >>> shift) & 0xF];
+        }
+        dst[position++] = CR;
+        dst[position++] = LF;
+        final int keyLength = key.remaining();
+        key.get(dst, position, keyLength);
+        position += keyLength;
+        dst[position++] = LF;
+        final int valueLength = value.remaining();
+        value.get(dst, position, valueLength);
+        position += valueLength;
+        dst[position++] = CR;
+        dst[position++] = LF;
+        return position;
+    }
+}
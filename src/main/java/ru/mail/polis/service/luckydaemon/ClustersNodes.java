@@ -1,18 +1,29 @@
 package ru.mail.polis.service.luckydaemon;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.Iterables;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
 import org.jetbrains.annotations.NotNull;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.NavigableMap;
 import java.util.Set;
 import java.util.Collections;
+import java.util.TreeMap;
 
 public class ClustersNodes {
+    public static final int DEFAULT_VIRTUAL_NODES = 64;
+    private static final HashFunction TOKEN_HASH = Hashing.murmur3_32();
 
     private final List<String> nodesList;
     private final String id;
+    private final NavigableMap<Integer, String> ring;
+    private final PartitionHasher hasher;
 
     /**
      * Constructor.
@@ -21,10 +32,50 @@ public class ClustersNodes {
      * @param id id.
      */
     public ClustersNodes(@NotNull final Set<String> nodes, @NotNull final String id) {
+        this(nodes, id, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param nodes set of nodes.
+     * @param id id.
+     * @param virtualNodes amount of tokens on the ring for each node.
+     */
+    public ClustersNodes(@NotNull final Set<String> nodes,
+                         @NotNull final String id,
+                         final int virtualNodes) {
+        this(nodes, id, virtualNodes, PartitionHasher.MURMUR3);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param nodes set of nodes.
+     * @param id id.
+     * @param virtualNodes amount of tokens on the ring for each node.
+     * @param hasher hash which places keys on the ring.
+     */
+    public ClustersNodes(@NotNull final Set<String> nodes,
+                         @NotNull final String id,
+                         final int virtualNodes,
+                         @NotNull final PartitionHasher hasher) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("at least one virtual node required");
+        }
         final List<String> sortedNodes = new ArrayList<>(nodes);
         Collections.sort(sortedNodes);
         this.nodesList = sortedNodes;
         this.id = id;
+        this.hasher = hasher;
+        this.ring = new TreeMap<>();
+        for (final String node : sortedNodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                final int token = TOKEN_HASH.hashString(node + '#' + i, Charsets.UTF_8).asInt();
+                // on token collision the smallest node wins, so every node builds the same ring
+                ring.putIfAbsent(token, node);
+            }
+        }
     }
 
     /**
@@ -34,9 +85,8 @@ public class ClustersNodes {
      * @return id of the cluster node.
      */
     public String keyCheck(@NotNull final ByteBuffer key) {
-        final int hashCode = key.hashCode();
-        final int node = (hashCode & Integer.MAX_VALUE) % nodesList.size();
-        return nodesList.get(node);
+        final var entry = ring.ceilingEntry(hasher.hash(key));
+        return entry == null ? ring.firstEntry().getValue() : entry.getValue();
     }
 
     public Set<String> getNodes() {
@@ -49,6 +99,7 @@ public class ClustersNodes {
 
     /**
      * Get id where replicas will be.
+     * Replicas are the next distinct nodes clockwise on the ring starting from the key token.
      *
      * @param count - how many replics
      * @param key id
@@ -56,11 +107,31 @@ public class ClustersNodes {
      */
     public String[] getReplics(final int count, @NotNull final ByteBuffer key) {
         final String[] res = new String[count];
-        int index = (key.hashCode() & Integer.MAX_VALUE) % nodesList.size();
-        for (int i = 0; i < count; i++) {
-            res[i] = nodesList.get(index);
-            index = (index + 1) % nodesList.size();
+        final int token = hasher.hash(key);
+        final Iterable<String> clockwise = Iterables.concat(
+                ring.tailMap(token, true).values(),
+                ring.headMap(token, false).values());
+        int found = 0;
+        for (final String node : clockwise) {
+            if (found == count) {
+                break;
+            }
+            if (!contains(res, found, node)) {
+                res[found++] = node;
+            }
+        }
+        if (found < count) {
+            throw new IllegalArgumentException("not enough nodes for " + count + " replicas");
         }
         return res;
     }
+
+    private static boolean contains(final String[] nodes, final int size, final String node) {
+        for (int i = 0; i < size; i++) {
+            if (nodes[i].equals(node)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
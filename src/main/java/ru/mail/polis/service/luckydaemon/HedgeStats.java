@@ -0,0 +1,71 @@
+package ru.mail.polis.service.luckydaemon;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Amount of speculative reads sent to extra replicas and how often they helped.
+ */
+public final class HedgeStats {
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder won = new LongAdder();
+
+    void read() {
+        reads.increment();
+    }
+
+    void hedged() {
+        hedged.increment();
+    }
+
+    void won() {
+        won.increment();
+    }
+
+    /**
+     * Quorum reads which could be hedged.
+     *
+     * @return reads
+     */
+    public long getReads() {
+        return reads.sum();
+    }
+
+    /**
+     * Reads which sent at least one speculative request.
+     *
+     * @return hedged reads
+     */
+    public long getHedged() {
+        return hedged.sum();
+    }
+
+    /**
+     * Hedged reads answered with a reply of a speculative request.
+     *
+     * @return won reads
+     */
+    public long getWon() {
+        return won.sum();
+    }
+
+    /**
+     * Share of reads which were hedged.
+     *
+     * @return hedged reads to all reads, 0 if there were no reads
+     */
+    public double getHedgeRate() {
+        final long all = getReads();
+        return all == 0 ? 0 : (double) getHedged() / all;
+    }
+
+    /**
+     * Share of hedged reads which were answered faster thanks to the speculative request.
+     *
+     * @return won reads to hedged reads, 0 if no read was hedged
+     */
+    public double getWinRate() {
+        final long all = getHedged();
+        return all == 0 ? 0 : (double) getWon() / all;
+    }
+}
@@ -0,0 +1,125 @@
+package ru.mail.polis.service.luckydaemon;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Quorum read which starts with acks replicas only. A read slower than the latency percentile
+ * of its replica is hedged: the same read goes to the next replica outside the started ones,
+ * and the first acks replies win. A failed read is replaced by the next replica at once.
+ *
+ * @param <T> reply of a replica
+ */
+final class HedgedRead<T> {
+    private final List<String> replicas;
+    private final int acks;
+    private final Function<String, CompletableFuture<T>> read;
+    private final Function<String, ReplicaLatency> latencies;
+    private final HedgeStats stats;
+    private final CompletableFuture<List<T>> result = new CompletableFuture<>();
+    private final List<T> replies;
+    private int started;
+    private int failed;
+    private boolean hedged;
+    private boolean won;
+
+    private HedgedRead(@NotNull final List<String> replicas,
+                       final int acks,
+                       @NotNull final Function<String, CompletableFuture<T>> read,
+                       @NotNull final Function<String, ReplicaLatency> latencies,
+                       @NotNull final HedgeStats stats) {
+        this.replicas = replicas;
+        this.acks = acks;
+        this.read = read;
+        this.latencies = latencies;
+        this.stats = stats;
+        this.replies = new ArrayList<>(acks);
+    }
+
+    /**
+     * Start the read.
+     *
+     * @param replicas replicas in order of preference
+     * @param acks amount of replies to wait for
+     * @param read read of a replica
+     * @param latencies latency of a replica
+     * @param stats stats of hedged reads
+     * @return future with first acks replies
+     */
+    static <T> CompletableFuture<List<T>> start(@NotNull final List<String> replicas,
+                                                final int acks,
+                                                @NotNull final Function<String, CompletableFuture<T>> read,
+                                                @NotNull final Function<String, ReplicaLatency> latencies,
+                                                @NotNull final HedgeStats stats) {
+        final HedgedRead<T> hedgedRead = new HedgedRead<>(replicas, acks, read, latencies, stats);
+        if (replicas.size() < acks) {
+            return CompletableFuture.failedFuture(new IOException("not enough replicas"));
+        }
+        stats.read();
+        for (int i = 0; i < acks; i++) {
+            hedgedRead.launch(false);
+        }
+        return hedgedRead.result;
+    }
+
+    private void launch(final boolean speculative) {
+        final String replica;
+        synchronized (this) {
+            if (started == replicas.size() || result.isDone()) {
+                return;
+            }
+            replica = replicas.get(started++);
+            if (speculative && !hedged) {
+                hedged = true;
+                stats.hedged();
+            }
+        }
+        final ReplicaLatency latency = latencies.apply(replica);
+        final long start = System.nanoTime();
+        final CompletableFuture<T> reply = read.apply(replica);
+        reply.whenComplete((value, error) -> {
+            if (error == null) {
+                latency.record(System.nanoTime() - start);
+                accept(value, speculative);
+            } else {
+                reject(error);
+            }
+        });
+        CompletableFuture.delayedExecutor(latency.percentileNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+            if (!reply.isDone() && !result.isDone()) {
+                launch(true);
+            }
+        });
+    }
+
+    private synchronized void accept(final T value, final boolean speculative) {
+        if (replies.size() == acks) {
+            return;
+        }
+        replies.add(value);
+        won |= speculative;
+        if (replies.size() == acks) {
+            if (won) {
+                stats.won();
+            }
+            result.complete(new ArrayList<>(replies));
+        }
+    }
+
+    private void reject(@NotNull final Throwable error) {
+        synchronized (this) {
+            failed++;
+            if (failed > replicas.size() - acks) {
+                result.completeExceptionally(new IOException("not enough replicas", error));
+                return;
+            }
+        }
+        launch(false);
+    }
+}
@@ -0,0 +1,131 @@
+package ru.mail.polis.service.luckydaemon;
+
+import com.google.common.collect.Iterators;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import ru.mail.polis.Record;
+import ru.mail.polis.dao.Iters;
+import ru.mail.polis.dao.RecordTimestamp;
+import ru.mail.polis.dao.RocksDBIterator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Range of the whole cluster: local and remote ranges with timestamps and tombstones merged by key.
+ * The newest record of every key wins, tombstones are dropped, values are returned without timestamp.
+ * Tombstones are skipped by {@link #whenReady()} one by one, so a long run of them
+ * never makes hasNext() wait for a page of other node.
+ */
+final class MergedRange implements AsyncIterator<Record>, Closeable {
+    private static final Comparator<Map.Entry<ByteBuffer, RecordTimestamp>> NEWEST_FIRST =
+            Map.Entry.<ByteBuffer, RecordTimestamp>comparingByKey()
+                    .thenComparing(entry -> entry.getValue().getTimestamp(), Comparator.reverseOrder());
+
+    private final RocksDBIterator local;
+    private final List<RemoteRange> remotes;
+    @Nullable
+    private Iterator<Map.Entry<ByteBuffer, RecordTimestamp>> merged;
+    @Nullable
+    private Record pending;
+
+    /**
+     * Merge ranges of all nodes.
+     *
+     * @param local local range in timestamp mode with tombstones
+     * @param remotes ranges of other nodes
+     */
+    MergedRange(@NotNull final RocksDBIterator local, @NotNull final List<RemoteRange> remotes) {
+        this.local = local;
+        this.remotes = remotes;
+    }
+
+    /**
+     * Future of the first pages of all nodes.
+     *
+     * @return future completed when every node answered, fails if some node is not available
+     */
+    CompletableFuture<?> started() {
+        return CompletableFuture.allOf(remotes.stream()
+                .map(RemoteRange::started)
+                .toArray(CompletableFuture<?>[]::new));
+    }
+
+    /**
+     * Skip tombstones while every node has its next records buffered.
+     *
+     * @return null if the next value or the end of the range is found, otherwise future of the awaited page
+     */
+    @Nullable
+    @Override
+    public CompletableFuture<?> whenReady() {
+        while (pending == null) {
+            for (final RemoteRange remote : remotes) {
+                final CompletableFuture<?> ready = remote.whenReady();
+                if (ready != null) {
+                    return ready;
+                }
+            }
+            if (!merged().hasNext()) {
+                return null;
+            }
+            pending = valueOf(merged().next());
+        }
+        return null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (pending == null && merged().hasNext()) {
+            pending = valueOf(merged().next());
+        }
+        return pending != null;
+    }
+
+    @Override
+    public Record next() {
+        if (!hasNext()) {
+            throw new IllegalStateException("MergedRange error");
+        }
+        final Record record = pending;
+        pending = null;
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        remotes.forEach(RemoteRange::cancel);
+        local.close();
+    }
+
+    private Iterator<Map.Entry<ByteBuffer, RecordTimestamp>> merged() {
+        if (merged == null) {
+            // merging peeks every source, so it is created when the first pages are here
+            final List<Iterator<Map.Entry<ByteBuffer, RecordTimestamp>>> sources = new ArrayList<>(remotes.size() + 1);
+            sources.addAll(remotes);
+            sources.add(Iterators.transform(local, record -> Map.entry(record.getKey(), local.getRecordTimestamp())));
+            merged = Iters.collapseEquals(Iterators.mergeSorted(sources, NEWEST_FIRST), Map.Entry::getKey);
+        }
+        return merged;
+    }
+
+    /**
+     * Value of the newest record of a key.
+     *
+     * @return record without timestamp, null for tombstone
+     */
+    @Nullable
+    private static Record valueOf(@NotNull final Map.Entry<ByteBuffer, RecordTimestamp> latest) {
+        final RecordTimestamp record = latest.getValue();
+        return record.isValue() ? Record.of(latest.getKey(), record.getValue()) : null;
+    }
+}
@@ -0,0 +1,64 @@
+package ru.mail.polis.service.luckydaemon;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Maps key to its position on the {@link ClustersNodes} ring.
+ */
+@FunctionalInterface
+public interface PartitionHasher {
+    /**
+     * Polynomial hash of {@link ByteBuffer#hashCode()}, skews on sequential ids.
+     */
+    PartitionHasher BYTE_BUFFER = ByteBuffer::hashCode;
+
+    /**
+     * 32-bit murmur3 (x86 variant, zero seed) reading the key in place.
+     */
+    PartitionHasher MURMUR3 = PartitionHasher::murmur3;
+
+    /**
+     * Hash remaining bytes of the key without changing its position.
+     *
+     * @param key key to hash
+     * @return token of the key
+     */
+    int hash(@NotNull ByteBuffer key);
+
+    private static int murmur3(@NotNull final ByteBuffer key) {
+        final int offset = key.position();
+        final int length = key.remaining();
+        final int blocks = length & ~3;
+        final boolean bigEndian = key.order() == ByteOrder.BIG_ENDIAN;
+        int h1 = 0;
+        for (int i = 0; i < blocks; i += 4) {
+            final int block = key.getInt(offset + i);
+            h1 ^= mixK1(bigEndian ? Integer.reverseBytes(block) : block);
+            h1 = Integer.rotateLeft(h1, 13);
+            h1 = h1 * 5 + 0xe6546b64;
+        }
+        if (blocks != length) {
+            int k1 = 0;
+            for (int i = length - 1; i >= blocks; i--) {
+                k1 = (k1 << 8) | (key.get(offset + i) & 0xff);
+            }
+            h1 ^= mixK1(k1);
+        }
+        h1 ^= length;
+        h1 ^= h1 >>> 16;
+        h1 *= 0x85ebca6b;
+        h1 ^= h1 >>> 13;
+        h1 *= 0xc2b2ae35;
+        h1 ^= h1 >>> 16;
+        return h1;
+    }
+
+    private static int mixK1(final int block) {
+        int k1 = block * 0xcc9e2d51;
+        k1 = Integer.rotateLeft(k1, 15);
+        return k1 * 0x1b873593;
+    }
+}
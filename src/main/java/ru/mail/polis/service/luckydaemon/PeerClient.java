@@ -0,0 +1,107 @@
+package ru.mail.polis.service.luckydaemon;
+
+import one.nio.http.Response;
+
+import org.jetbrains.annotations.NotNull;
+
+import ru.mail.polis.service.ServiceConfig;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous client of other node of the cluster. Requests don't hold a thread while in flight,
+ * the node has its own pool of keep-alive connections, and requests beyond the in-flight limit
+ * of the node fail at once instead of piling up on a slow node.
+ */
+final class PeerClient {
+    private final String endpoint;
+    private final HttpClient client;
+    private final Duration timeout;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    PeerClient(@NotNull final String endpoint, @NotNull final ServiceConfig config) {
+        this.endpoint = endpoint;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(config.peerConnectTimeoutMillis))
+                .build();
+        this.timeout = Duration.ofMillis(config.peerTimeoutMillis);
+        this.maxInFlight = config.peerMaxInFlight;
+    }
+
+    CompletableFuture<Response> get(@NotNull final String uri, @NotNull final String... headers) {
+        return send(() -> request(uri, timeout, headers).GET());
+    }
+
+    CompletableFuture<Response> put(@NotNull final String uri,
+                                    @NotNull final byte[] body,
+                                    @NotNull final String... headers) {
+        return send(() -> request(uri, timeout, headers).PUT(HttpRequest.BodyPublishers.ofByteArray(body)));
+    }
+
+    CompletableFuture<Response> delete(@NotNull final String uri, @NotNull final String... headers) {
+        return send(() -> request(uri, timeout, headers).DELETE());
+    }
+
+    /**
+     * Post with own timeout, big batches take longer than single requests.
+     */
+    CompletableFuture<Response> post(@NotNull final String uri,
+                                     @NotNull final byte[] body,
+                                     @NotNull final Duration timeout,
+                                     @NotNull final String... headers) {
+        return send(() -> request(uri, timeout, headers).POST(HttpRequest.BodyPublishers.ofByteArray(body)));
+    }
+
+    private HttpRequest.Builder request(@NotNull final String uri,
+                                        @NotNull final Duration timeout,
+                                        @NotNull final String... headers) {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(endpoint + uri)).timeout(timeout);
+        for (final String header : headers) {
+            // headers are written like "Name: value" as in one-nio
+            final int colon = header.indexOf(':');
+            builder.header(header.substring(0, colon), header.substring(colon + 1).trim());
+        }
+        return builder;
+    }
+
+    /**
+     * Send request built by the given builder, a request which can't be built or sent fails the future.
+     */
+    private CompletableFuture<Response> send(@NotNull final Supplier<HttpRequest.Builder> builder) {
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("too many requests in flight to " + endpoint));
+        }
+        final CompletableFuture<HttpResponse<byte[]>> response;
+        try {
+            response = client.sendAsync(builder.get().build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (RuntimeException e) {
+            // e.g. malformed uri, the request is not in flight
+            inFlight.decrementAndGet();
+            return CompletableFuture.failedFuture(e);
+        }
+        return response.whenComplete((result, error) -> inFlight.decrementAndGet())
+                .thenApply(PeerClient::toResponse);
+    }
+
+    private static Response toResponse(@NotNull final HttpResponse<byte[]> response) {
+        final Response result = new Response(String.valueOf(response.statusCode()), response.body());
+        response.headers().map().forEach((name, values) -> {
+            if (!"content-length".equalsIgnoreCase(name)) {
+                values.forEach(value -> result.addHeader(name + ": " + value));
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,61 @@
+package ru.mail.polis.service.luckydaemon;
+
+import org.jetbrains.annotations.NotNull;
+
+import ru.mail.polis.dao.ByteBufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque position of a paged range: the first key of the next page and a hint of the snapshot
+ * the previous pages were read from. Encoded as url-safe base64 of 8-byte snapshot lease and key.
+ */
+final class RangeCursor {
+    static final String HEADER = "X-OK-Cursor: ";
+
+    private final ByteBuffer key;
+    private final long snapshot;
+
+    RangeCursor(@NotNull final ByteBuffer key, final long snapshot) {
+        this.key = key;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Decode cursor sent by client.
+     *
+     * @param cursor encoded cursor
+     * @return cursor
+     * @throws IllegalArgumentException if the cursor is broken
+     */
+    static RangeCursor parse(@NotNull final String cursor) {
+        final ByteBuffer bytes = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+        if (bytes.remaining() <= Long.BYTES) {
+            throw new IllegalArgumentException("broken cursor");
+        }
+        final long snapshot = bytes.getLong();
+        return new RangeCursor(bytes.slice(), snapshot);
+    }
+
+    String encode() {
+        final ByteBuffer bytes = ByteBuffer.allocate(Long.BYTES + key.remaining());
+        bytes.putLong(snapshot).put(key.duplicate());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.array());
+    }
+
+    @NotNull
+    ByteBuffer getKey() {
+        return key.duplicate();
+    }
+
+    @NotNull
+    String getId() {
+        return new String(ByteBufferUtils.fromByteToArray(key), StandardCharsets.UTF_8);
+    }
+
+    long getSnapshot() {
+        return snapshot;
+    }
+}
@@ -0,0 +1,48 @@
+package ru.mail.polis.service.luckydaemon;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import ru.mail.polis.Record;
+
+import java.util.List;
+
+/**
+ * Records of one page of a range and cursor to the next page.
+ */
+final class RangePage {
+    private final List<Record> records;
+    @Nullable
+    private final RangeCursor next;
+
+    private RangePage(@NotNull final List<Record> records, @Nullable final RangeCursor next) {
+        this.records = records;
+        this.next = next;
+    }
+
+    /**
+     * Page of records read one past the limit, the extra record starts the next page.
+     *
+     * @param records up to limit + 1 records
+     * @param limit records per page
+     * @param snapshot snapshot lease of the range
+     * @return page with cursor if there are more records
+     */
+    static RangePage of(@NotNull final List<Record> records, final int limit, final long snapshot) {
+        if (records.size() <= limit) {
+            return new RangePage(records, null);
+        }
+        final RangeCursor next = new RangeCursor(records.get(limit).getKey(), snapshot);
+        return new RangePage(records.subList(0, limit), next);
+    }
+
+    @NotNull
+    List<Record> getRecords() {
+        return records;
+    }
+
+    @Nullable
+    RangeCursor getNext() {
+        return next;
+    }
+}
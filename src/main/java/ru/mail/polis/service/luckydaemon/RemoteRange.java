@@ -0,0 +1,157 @@
+package ru.mail.polis.service.luckydaemon;
+
+import one.nio.http.Response;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import ru.mail.polis.dao.RecordTimestamp;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Records of a range stored on other node, with timestamps and tombstones.
+ * Fetched page by page, the next page is requested while the current one is consumed,
+ * so at most two pages per node are held in memory. Every next page is twice as large
+ * up to the max, so a short read costs a small page and a long one takes few requests.
+ */
+final class RemoteRange implements AsyncIterator<Map.Entry<ByteBuffer, RecordTimestamp>> {
+    private final PeerClient client;
+    @Nullable
+    private final String end;
+    private final int maxPageSize;
+    private int pageSize;
+    private final Deque<Map.Entry<ByteBuffer, RecordTimestamp>> page = new ArrayDeque<>();
+    private final CompletableFuture<List<Map.Entry<ByteBuffer, RecordTimestamp>>> firstPage;
+    @Nullable
+    private CompletableFuture<List<Map.Entry<ByteBuffer, RecordTimestamp>>> nextPage;
+    @Nullable
+    private ByteBuffer lastKey;
+
+    /**
+     * Start fetching the first page.
+     *
+     * @param client client of the node
+     * @param start first id, inclusive
+     * @param end last id, exclusive, null for unbounded range
+     * @param pageSize records of the first request, at least 2
+     * @param maxPageSize max records per request
+     */
+    RemoteRange(@NotNull final PeerClient client,
+                @NotNull final String start,
+                @Nullable final String end,
+                final int pageSize,
+                final int maxPageSize) {
+        this.client = client;
+        this.end = end;
+        this.pageSize = pageSize;
+        this.maxPageSize = Math.max(pageSize, maxPageSize);
+        this.firstPage = fetch(start);
+        this.nextPage = firstPage;
+    }
+
+    /**
+     * Future of the first page, fails if node is not available.
+     *
+     * @return future completed when the first page arrives
+     */
+    CompletableFuture<?> started() {
+        return firstPage;
+    }
+
+    /**
+     * Merging of ranges takes up to two records of a node per merged record,
+     * so the node is ready when two records are buffered or the next page is here.
+     */
+    @Nullable
+    @Override
+    public CompletableFuture<?> whenReady() {
+        if (page.size() < 2 && nextPage != null && !nextPage.isDone()) {
+            return nextPage;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (page.isEmpty() && nextPage != null) {
+            take(nextPage.join());
+        }
+        return !page.isEmpty();
+    }
+
+    @Override
+    public Map.Entry<ByteBuffer, RecordTimestamp> next() {
+        if (!hasNext()) {
+            throw new IllegalStateException("RemoteRange error");
+        }
+        return page.poll();
+    }
+
+    /**
+     * Stop prefetching.
+     */
+    void cancel() {
+        if (nextPage != null) {
+            nextPage.cancel(false);
+            nextPage = null;
+        }
+    }
+
+    private void take(@NotNull final List<Map.Entry<ByteBuffer, RecordTimestamp>> records) {
+        if (records.size() < pageSize) {
+            nextPage = null;
+        } else {
+            final ByteBuffer last = records.get(records.size() - 1).getKey();
+            pageSize = (int) Math.min(2L * pageSize, maxPageSize);
+            nextPage = fetch(StandardCharsets.UTF_8.decode(last.duplicate()).toString());
+        }
+        for (final Map.Entry<ByteBuffer, RecordTimestamp> record : records) {
+            // next page starts with the last key of the previous one
+            if (!record.getKey().equals(lastKey)) {
+                page.add(record);
+            }
+        }
+        if (!records.isEmpty()) {
+            lastKey = records.get(records.size() - 1).getKey();
+        }
+    }
+
+    private CompletableFuture<List<Map.Entry<ByteBuffer, RecordTimestamp>>> fetch(@NotNull final String start) {
+        final StringBuilder uri = new StringBuilder(RequestCoordinators.RANGE_URL)
+                .append("?start=").append(URLEncoder.encode(start, StandardCharsets.UTF_8));
+        if (end != null) {
+            uri.append("&end=").append(URLEncoder.encode(end, StandardCharsets.UTF_8));
+        }
+        uri.append("&limit=").append(pageSize);
+        return client.get(uri.toString(), RequestCoordinators.PROXY_HEADER).thenCompose(response ->
+                ReplicaFutures.call(() -> decode(response)));
+    }
+
+    private static List<Map.Entry<ByteBuffer, RecordTimestamp>> decode(@NotNull final Response response)
+            throws IOException {
+        if (response.getStatus() != 200) {
+            throw new IOException("unexpected status " + response.getStatus());
+        }
+        final List<byte[]> frames = BatchFrames.decode(response.getBody());
+        if (frames.size() % 2 != 0) {
+            throw new IOException("broken range page");
+        }
+        final List<Map.Entry<ByteBuffer, RecordTimestamp>> records = new ArrayList<>(frames.size() / 2);
+        final Iterator<byte[]> iterator = frames.iterator();
+        while (iterator.hasNext()) {
+            records.add(Map.entry(ByteBuffer.wrap(iterator.next()), RecordTimestamp.fromBytes(iterator.next())));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,120 @@
+package ru.mail.polis.service.luckydaemon;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class ReplicaFutures {
+
+    private ReplicaFutures() {
+    }
+
+    /**
+     * Run blocking replica call on executor.
+     *
+     * @param call call to run
+     * @param executor where to run
+     * @return future with result of the call
+     */
+    static <T> CompletableFuture<T> async(@NotNull final ReplicaCall<T> call,
+                                          @NotNull final Executor executor) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(new BoundedExecutor.Expirable() {
+                @Override
+                public void run() {
+                    try {
+                        future.complete(call.call());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        future.completeExceptionally(e);
+                    } catch (IOException | RuntimeException e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+
+                @Override
+                public void expire() {
+                    future.completeExceptionally(new RejectedExecutionException("queued for too long"));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Run call in the calling thread, e.g. to decode a response in a callback of other future.
+     *
+     * @param call call to run
+     * @return future with result of the call
+     */
+    static <T> CompletableFuture<T> call(@NotNull final ReplicaCall<T> call) {
+        return async(call, Runnable::run);
+    }
+
+    /**
+     * Check if the call failed because the executor was overloaded.
+     *
+     * @param error error of the future
+     * @return true if the call or a call it depends on was rejected or expired in the queue
+     */
+    static boolean isOverload(@NotNull final Throwable error) {
+        // quorum failures wrap the error of the replica
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RejectedExecutionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Complete as soon as acks futures succeeded or fail when it is not possible anymore.
+     * Futures which are not needed for the quorum keep running in background.
+     *
+     * @param futures replica futures
+     * @param acks amount of successful futures to wait for
+     * @return future with first acks results
+     */
+    static <T> CompletableFuture<List<T>> atLeast(@NotNull final List<CompletableFuture<T>> futures,
+                                                  final int acks) {
+        final CompletableFuture<List<T>> result = new CompletableFuture<>();
+        final List<T> results = new ArrayList<>(acks);
+        final AtomicInteger failures = new AtomicInteger();
+        final int maxFailures = futures.size() - acks;
+        if (maxFailures < 0) {
+            result.completeExceptionally(new IOException("not enough replicas"));
+            return result;
+        }
+        for (final CompletableFuture<T> future : futures) {
+            future.whenComplete((value, error) -> {
+                if (error == null) {
+                    synchronized (results) {
+                        if (results.size() < acks) {
+                            results.add(value);
+                            if (results.size() == acks) {
+                                result.complete(new ArrayList<>(results));
+                            }
+                        }
+                    }
+                } else if (failures.incrementAndGet() == maxFailures + 1) {
+                    result.completeExceptionally(new IOException("not enough replicas", error));
+                }
+            });
+        }
+        return result;
+    }
+
+    @FunctionalInterface
+    interface ReplicaCall<T> {
+        T call() throws IOException, InterruptedException;
+    }
+}
@@ -0,0 +1,51 @@
+package ru.mail.polis.service.luckydaemon;
+
+import java.util.Arrays;
+
+/**
+ * Recent read latencies of a replica. The percentile is recomputed after every few samples,
+ * so a read only takes the cached value.
+ */
+final class ReplicaLatency {
+    private static final int SAMPLES = 256;
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final long[] samples = new long[SAMPLES];
+    private final double percentile;
+    private int next;
+    private boolean full;
+    private int sinceUpdate;
+    private volatile long percentileNanos;
+
+    /**
+     * Latency of a replica without samples yet.
+     *
+     * @param percentile percentile to track, from 0 to 1
+     * @param defaultNanos latency until there are enough samples
+     */
+    ReplicaLatency(final double percentile, final long defaultNanos) {
+        this.percentile = percentile;
+        this.percentileNanos = defaultNanos;
+    }
+
+    synchronized void record(final long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % SAMPLES;
+        full |= next == 0;
+        if (++sinceUpdate == RECOMPUTE_EVERY) {
+            sinceUpdate = 0;
+            final long[] sorted = Arrays.copyOf(samples, full ? SAMPLES : next);
+            Arrays.sort(sorted);
+            percentileNanos = sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))];
+        }
+    }
+
+    /**
+     * Latency of the percentile among recent reads.
+     *
+     * @return latency in nanoseconds, the default one if there are not enough samples
+     */
+    long percentileNanos() {
+        return percentileNanos;
+    }
+}
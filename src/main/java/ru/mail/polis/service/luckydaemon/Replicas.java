@@ -33,13 +33,13 @@ public final class Replicas {
      * @param session current session
      * @param defaultRF if replics is null
      * @param clusterSize size of cluster
-     * @return RF
+     * @return RF or null if error was sent to session
      */
     public static Replicas calculateRF(final String replics,
                                        final int clusterSize,
                                        @NotNull final HttpSession session,
                                        final Replicas defaultRF) throws IOException {
-        Replicas replica = null;
+        final Replicas replica;
         try {
             if(replics == null) {
                 replica = defaultRF;
@@ -52,8 +52,8 @@ public final class Replicas {
             return replica;
         } catch (IllegalArgumentException e) {
             session.sendError(BAD_REQUEST, "wrong replica");
+            return null;
         }
-        return replica;
     }
 
     @NotNull
@@ -0,0 +1,195 @@
+package ru.mail.polis.service.luckydaemon;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import ru.mail.polis.dao.RecordTimestamp;
+import ru.mail.polis.service.ServiceConfig;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client of {@link ReplicationProtocol} of other node. All requests share one connection:
+ * the writer thread connects on demand and writes queued frames with one flush,
+ * the reader thread completes requests by id of their replies.
+ * When the connection breaks all requests in flight fail and the next request reconnects.
+ */
+final class ReplicationClient implements Closeable {
+    private static final ByteBuffer CLOSE = ByteBuffer.allocate(0);
+
+    private final InetSocketAddress address;
+    private final int connectTimeout;
+    private final long timeout;
+    private final int maxInFlight;
+    private final AtomicInteger ids = new AtomicInteger();
+    private final Map<Integer, CompletableFuture<RecordTimestamp>> inFlight = new ConcurrentHashMap<>();
+    private final BlockingQueue<ByteBuffer> frames = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile Socket socket;
+
+    /**
+     * Client of the node, it doesn't connect until the first request.
+     *
+     * @param endpoint HTTP endpoint of the node
+     * @param config tuning of the protocol and of timeouts
+     */
+    ReplicationClient(@NotNull final String endpoint, @NotNull final ServiceConfig config) {
+        final URI uri = URI.create(endpoint);
+        this.address = new InetSocketAddress(uri.getHost(), uri.getPort() + config.replicationPortOffset);
+        this.connectTimeout = (int) config.peerConnectTimeoutMillis;
+        this.timeout = config.peerTimeoutMillis;
+        this.maxInFlight = config.peerMaxInFlight;
+        this.writer = new Thread(this::write, "repl-writer-" + address.getPort());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    CompletableFuture<RecordTimestamp> get(@NotNull final ByteBuffer key) {
+        return send(ReplicationProtocol.GET, 0, key, null);
+    }
+
+    CompletableFuture<RecordTimestamp> digest(@NotNull final ByteBuffer key) {
+        return send(ReplicationProtocol.DIGEST, 0, key, null);
+    }
+
+    CompletableFuture<RecordTimestamp> put(@NotNull final ByteBuffer key,
+                                           @NotNull final ByteBuffer value,
+                                           final long timestamp) {
+        return send(ReplicationProtocol.PUT, timestamp, key, value);
+    }
+
+    CompletableFuture<RecordTimestamp> delete(@NotNull final ByteBuffer key, final long timestamp) {
+        return send(ReplicationProtocol.DELETE, timestamp, key, null);
+    }
+
+    private CompletableFuture<RecordTimestamp> send(final byte operation,
+                                                    final long timestamp,
+                                                    @NotNull final ByteBuffer key,
+                                                    @Nullable final ByteBuffer value) {
+        if (inFlight.size() >= maxInFlight) {
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("too many requests in flight to " + address));
+        }
+        final int id = ids.incrementAndGet();
+        final CompletableFuture<RecordTimestamp> reply = new CompletableFuture<>();
+        inFlight.put(id, reply);
+        frames.add(ReplicationProtocol.request(id, operation, timestamp, key, value));
+        return reply.orTimeout(timeout, TimeUnit.MILLISECONDS)
+                .whenComplete((record, error) -> inFlight.remove(id));
+    }
+
+    private void write() {
+        OutputStream out = null;
+        while (true) {
+            try {
+                ByteBuffer frame = frames.take();
+                if (frame == CLOSE) {
+                    return;
+                }
+                if (socket == null) {
+                    out = connect();
+                }
+                // frames queued meanwhile go out with one flush
+                while (frame != null && frame != CLOSE) {
+                    out.write(frame.array(), frame.arrayOffset(), frame.limit());
+                    frame = frames.poll();
+                }
+                out.flush();
+                if (frame == CLOSE) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                disconnect(socket, e);
+            }
+        }
+    }
+
+    private OutputStream connect() throws IOException {
+        final Socket connection = new Socket();
+        try {
+            connection.setTcpNoDelay(true);
+            connection.connect(address, connectTimeout);
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+        socket = connection;
+        final Thread reader = new Thread(() -> read(connection), "repl-reader-" + address.getPort());
+        reader.setDaemon(true);
+        reader.start();
+        return new BufferedOutputStream(connection.getOutputStream());
+    }
+
+    private void read(@NotNull final Socket connection) {
+        try {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            while (true) {
+                final int length = ReplicationProtocol.readLength(in, ReplicationProtocol.REPLY_HEADER);
+                final int id = in.readInt();
+                final byte status = in.readByte();
+                final long timestamp = in.readLong();
+                final byte[] value = new byte[length - ReplicationProtocol.REPLY_HEADER];
+                in.readFully(value);
+                final CompletableFuture<RecordTimestamp> reply = inFlight.remove(id);
+                if (reply == null) {
+                    // timed out already
+                    continue;
+                }
+                if (status == ReplicationProtocol.FAILED) {
+                    reply.completeExceptionally(new IOException("replica " + address + " failed"));
+                } else {
+                    reply.complete(ReplicationProtocol.recordOf(status, timestamp, value));
+                }
+            }
+        } catch (IOException e) {
+            disconnect(connection, e);
+        }
+    }
+
+    /**
+     * Close the connection once, requests in flight on it can't get their replies anymore.
+     */
+    private synchronized void disconnect(@Nullable final Socket connection, @NotNull final IOException error) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                error.addSuppressed(e);
+            }
+        }
+        if (connection != socket) {
+            return;
+        }
+        socket = null;
+        inFlight.values().forEach(reply -> reply.completeExceptionally(error));
+    }
+
+    @Override
+    public void close() throws IOException {
+        frames.add(CLOSE);
+        final Socket connection = socket;
+        if (connection != null) {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ru.mail.polis.service.luckydaemon;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import ru.mail.polis.dao.RecordTimestamp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary frames of replica requests between nodes, many requests are in flight on one connection
+ * and replies are matched to requests by id.
+ *
+ * <p>Request: 4-byte length of the rest, 4-byte id, operation byte, 8-byte timestamp,
+ * 4-byte key length, key and value up to the end of the frame.
+ *
+ * <p>Reply: 4-byte length of the rest, 4-byte id, status byte, 8-byte timestamp
+ * and value up to the end of the frame.
+ */
+final class ReplicationProtocol {
+    static final byte GET = 1;
+    static final byte PUT = 2;
+    static final byte DELETE = 3;
+    static final byte DIGEST = 4;
+
+    static final byte ABSENT = 0;
+    static final byte VALUE = 1;
+    static final byte TOMBSTONE = 2;
+    static final byte DONE = 3;
+    static final byte FAILED = 4;
+
+    static final int REQUEST_HEADER = Integer.BYTES + 1 + Long.BYTES + Integer.BYTES;
+    static final int REPLY_HEADER = Integer.BYTES + 1 + Long.BYTES;
+    static final int MAX_FRAME = 64 * 1024 * 1024;
+
+    private ReplicationProtocol() {
+        // Not instantiable
+    }
+
+    /**
+     * Encode request to a buffer ready to be written.
+     *
+     * @param id id of the request on its connection
+     * @param operation GET, PUT, DELETE or DIGEST
+     * @param timestamp timestamp of coordinator, ignored by reads
+     * @param key key, its position is not changed
+     * @param value value of PUT, null otherwise
+     * @return frame of the request
+     */
+    static ByteBuffer request(final int id,
+                              final byte operation,
+                              final long timestamp,
+                              @NotNull final ByteBuffer key,
+                              @Nullable final ByteBuffer value) {
+        final int valueLength = value == null ? 0 : value.remaining();
+        final ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + REQUEST_HEADER + key.remaining() + valueLength);
+        frame.putInt(REQUEST_HEADER + key.remaining() + valueLength)
+                .putInt(id)
+                .put(operation)
+                .putLong(timestamp)
+                .putInt(key.remaining())
+                .put(key.duplicate());
+        if (value != null) {
+            frame.put(value.duplicate());
+        }
+        return frame.flip();
+    }
+
+    /**
+     * Write reply with record of GET or DIGEST, or with DONE or FAILED status if record is null.
+     *
+     * @param out stream of the connection
+     * @param id id of the request
+     * @param status status if there is no record
+     * @param record record read by GET or DIGEST
+     */
+    static void writeReply(@NotNull final DataOutputStream out,
+                           final int id,
+                           final byte status,
+                           @Nullable final RecordTimestamp record) throws IOException {
+        if (record == null) {
+            out.writeInt(REPLY_HEADER);
+            out.writeInt(id);
+            out.writeByte(status);
+            out.writeLong(0);
+            return;
+        }
+        final ByteBuffer value = record.isValue() ? record.getValue().duplicate() : null;
+        out.writeInt(REPLY_HEADER + (value == null ? 0 : value.remaining()));
+        out.writeInt(id);
+        out.writeByte(record.isValue() ? VALUE : record.isDeleted() ? TOMBSTONE : ABSENT);
+        out.writeLong(record.getTimestamp());
+        if (value != null) {
+            if (value.hasArray()) {
+                out.write(value.array(), value.arrayOffset() + value.position(), value.remaining());
+            } else {
+                final byte[] bytes = new byte[value.remaining()];
+                value.get(bytes);
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Read length of the next frame.
+     *
+     * @param in stream of the connection
+     * @param header min length of the frame
+     * @return length of the rest of the frame
+     */
+    static int readLength(@NotNull final DataInputStream in, final int header) throws IOException {
+        final int length = in.readInt();
+        if (length < header || length > MAX_FRAME) {
+            throw new IOException("wrong frame length " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Record of GET or DIGEST reply.
+     *
+     * @param status status of the reply
+     * @param timestamp timestamp of the reply
+     * @param value value of the reply
+     * @return record
+     */
+    static RecordTimestamp recordOf(final byte status, final long timestamp, @NotNull final byte[] value) {
+        switch (status) {
+            case VALUE:
+                return RecordTimestamp.fromValue(ByteBuffer.wrap(value), timestamp);
+            case TOMBSTONE:
+                return RecordTimestamp.tombstone(timestamp);
+            default:
+                return RecordTimestamp.getEmptyRecord();
+        }
+    }
+}
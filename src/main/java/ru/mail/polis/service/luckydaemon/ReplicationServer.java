@@ -0,0 +1,154 @@
+package ru.mail.polis.service.luckydaemon;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import ru.mail.polis.dao.DAOImpl;
+import ru.mail.polis.dao.RecordTimestamp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Server of {@link ReplicationProtocol}, every connection of other node has its reader thread,
+ * requests run on replica workers and replies are written as soon as they are ready,
+ * in any order.
+ */
+final class ReplicationServer implements Closeable {
+    private static final Log logger = LogFactory.getLog(ReplicationServer.class);
+
+    private final DAOImpl dao;
+    private final Executor executor;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+
+    /**
+     * Bind server to the port, it accepts connections after {@link #start()}.
+     *
+     * @param port port of the protocol
+     * @param dao dao
+     * @param executor executor of requests
+     */
+    ReplicationServer(final int port,
+                      @NotNull final DAOImpl dao,
+                      @NotNull final Executor executor) throws IOException {
+        this.dao = dao;
+        this.executor = executor;
+        this.serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(port));
+        this.acceptor = new Thread(this::accept, "repl-acceptor-" + port);
+        acceptor.setDaemon(true);
+    }
+
+    void start() {
+        acceptor.start();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                final Thread reader = new Thread(() -> serve(socket), "repl-conn-" + socket.getPort());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.error("error while accepting replication connection", e);
+                }
+            }
+        }
+    }
+
+    private void serve(@NotNull final Socket socket) {
+        try (socket) {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (true) {
+                final int length = ReplicationProtocol.readLength(in, ReplicationProtocol.REQUEST_HEADER);
+                final int id = in.readInt();
+                final byte operation = in.readByte();
+                final long timestamp = in.readLong();
+                final int keyLength = in.readInt();
+                if (keyLength < 0 || keyLength > length - ReplicationProtocol.REQUEST_HEADER) {
+                    throw new IOException("wrong key length " + keyLength);
+                }
+                final byte[] key = new byte[keyLength];
+                in.readFully(key);
+                final byte[] value = new byte[length - ReplicationProtocol.REQUEST_HEADER - keyLength];
+                in.readFully(value);
+                ReplicaFutures.async(() -> apply(operation, timestamp, key, value), executor)
+                        .whenComplete((record, error) -> reply(out, id, record, error));
+            }
+        } catch (EOFException | SocketException e) {
+            // other node or this server closed the connection
+        } catch (IOException e) {
+            logger.error("error in replication connection", e);
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    @Nullable
+    private RecordTimestamp apply(final byte operation,
+                                  final long timestamp,
+                                  @NotNull final byte[] key,
+                                  @NotNull final byte[] value) throws IOException {
+        switch (operation) {
+            case ReplicationProtocol.GET:
+                return dao.getWithTimestamp(ByteBuffer.wrap(key));
+            case ReplicationProtocol.DIGEST:
+                return dao.getWithTimestamp(ByteBuffer.wrap(key)).toDigest();
+            case ReplicationProtocol.PUT:
+                dao.upsertWithTimestamp(ByteBuffer.wrap(key), ByteBuffer.wrap(value), timestamp);
+                return null;
+            case ReplicationProtocol.DELETE:
+                dao.removeWithTimestamp(ByteBuffer.wrap(key), timestamp);
+                return null;
+            default:
+                throw new IOException("unknown operation " + operation);
+        }
+    }
+
+    private static void reply(@NotNull final DataOutputStream out,
+                              final int id,
+                              @Nullable final RecordTimestamp record,
+                              @Nullable final Throwable error) {
+        final byte status = error == null ? ReplicationProtocol.DONE : ReplicationProtocol.FAILED;
+        synchronized (out) {
+            try {
+                ReplicationProtocol.writeReply(out, id, status, error == null ? record : null);
+                out.flush();
+            } catch (IOException e) {
+                // reader of the connection sees it closed as well
+                logger.debug("error while sending replication reply", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (final Socket socket : connections) {
+            socket.close();
+        }
+    }
+}
@@ -1,38 +1,79 @@
 package ru.mail.polis.service.luckydaemon;
 
-import one.nio.http.HttpClient;
 import one.nio.http.Request;
-import one.nio.http.HttpSession;
 import one.nio.http.Response;
-import one.nio.http.HttpException;
-import one.nio.pool.PoolException;
 
 import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import ru.mail.polis.Record;
+import ru.mail.polis.dao.ByteBufferUtils;
 import ru.mail.polis.dao.DAO;
 import ru.mail.polis.dao.DAOImpl;
+import ru.mail.polis.dao.Mutation;
 import ru.mail.polis.dao.RecordTimestamp;
+import ru.mail.polis.dao.RocksDBIterator;
+import ru.mail.polis.service.ServiceConfig;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.net.URLEncoder;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
-public class RequestCoordinators {
+public class RequestCoordinators implements Closeable {
     @NotNull
     private final DAOImpl dao;
     private final ClustersNodes nodes;
-    private final Map<String, HttpClient> clusterClients;
-    private final boolean proxied;
+    private final Map<String, PeerClient> clusterClients;
+    private final Map<String, ReplicationClient> replicationClients;
+    private final Executor workers;
+    private final Executor replicaWorkers;
+    private final boolean digestReads;
+    private final boolean hedgedReads;
+    private final double hedgePercentile;
+    private final long hedgeDefaultNanos;
+    private final Map<String, ReplicaLatency> latencies = new ConcurrentHashMap<>();
+    private final HedgeStats hedgeStats = new HedgeStats();
+    private final double readRepairChance;
+    private final Executor repairWorkers;
+    @Nullable
+    private final ScheduledExecutorService hintReplayer;
+    private final int hintReplayBatch;
 
     private static final Log logger = LogFactory.getLog(ServiceImpl.class);
-    private static final String PROXY_HEADER = "X-OK-Proxy: True";
+    static final String PROXY_HEADER = "X-OK-Proxy: True";
+    private static final String TIMESTAMP_HEADER = "X-OK-Timestamp: ";
+    private static final String DIGEST_HEADER = "X-OK-Digest: True";
+    private static final String REPAIR_HEADER = "X-OK-Repair: True";
     private static final String URL = "/v0/entity?id=";
+    static final String BATCH_GET_URL = "/v0/batch/get";
+    static final String BATCH_WRITE_URL = "/v0/batch/write";
+    private static final Duration BATCH_TIMEOUT = Duration.ofSeconds(5);
+    static final String RANGE_URL = "/v0/entities";
+    static final int RANGE_PAGE_SIZE = 1000;
+    static final int MAX_RANGE_LIMIT = 10_000;
 
     /**
      * Get id where replicas will be.
@@ -40,16 +81,116 @@ public class RequestCoordinators {
      * @param dao - dao
      * @param nodes nodes
      * @param clusterClients current clients of cluster
-     * @param isProxy -determine if request sent by proxying or not
+     * @param config tuning of replication
+     * @param pools executors of local work of client and replica requests and of read repair
      */
-    public RequestCoordinators(@NotNull final DAO dao,
-                               final ClustersNodes nodes,
-                               final Map<String, HttpClient> clusterClients,
-                               final boolean isProxy) {
+    RequestCoordinators(@NotNull final DAO dao,
+                        final ClustersNodes nodes,
+                        final Map<String, PeerClient> clusterClients,
+                        @NotNull final ServiceConfig config,
+                        @NotNull final WorkerPools pools) {
         this.dao = (DAOImpl) dao;
         this.nodes = nodes;
         this.clusterClients = clusterClients;
-        this.proxied = isProxy;
+        this.replicationClients = new HashMap<>();
+        if (config.replicationPortOffset > 0) {
+            clusterClients.keySet().forEach(node -> replicationClients.put(node, new ReplicationClient(node, config)));
+        }
+        this.workers = pools.client();
+        this.replicaWorkers = pools.replica();
+        this.digestReads = config.digestReads;
+        this.hedgedReads = config.hedgedReads;
+        this.hedgePercentile = config.hedgePercentile;
+        this.hedgeDefaultNanos = TimeUnit.MILLISECONDS.toNanos(config.peerTimeoutMillis) / 2;
+        this.readRepairChance = config.readRepairChance;
+        this.repairWorkers = pools.repair();
+        this.hintReplayBatch = config.hintReplayBatch;
+        if (config.hintedHandoff && !clusterClients.isEmpty()) {
+            this.hintReplayer = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("hints-%d").setDaemon(true).build());
+            hintReplayer.scheduleWithFixedDelay(this::replayHints,
+                    config.hintReplayIntervalMillis,
+                    config.hintReplayIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.hintReplayer = null;
+        }
+    }
+
+    /**
+     * Keep a hint of the write to the replica if the write fails, the hint is handed off
+     * when the replica is reachable again. A hint is one local put, so it is written right
+     * in the callback of the failed write and never waits behind repairs.
+     *
+     * @param node replica
+     * @param key key of the write
+     * @param record value or tombstone with timestamp of the write
+     * @param write write to the replica
+     * @return the write
+     */
+    private <T> CompletableFuture<T> hinted(final String node,
+                                            final ByteBuffer key,
+                                            final RecordTimestamp record,
+                                            final CompletableFuture<T> write) {
+        if (hintReplayer == null) {
+            return write;
+        }
+        return write.whenComplete((result, error) -> {
+            if (error != null) {
+                try {
+                    dao.getHints().add(node, key, record);
+                } catch (IOException e) {
+                    logger.warn("hint of the write to " + node + " is dropped", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Hand off a batch of hints to every node. Hints of a node are sent one by one,
+     * the first failure means the node is still unreachable and the rest waits for the next round.
+     */
+    private void replayHints() {
+        for (final String node : clusterClients.keySet()) {
+            try {
+                for (final Record hint : dao.getHints().get(node, hintReplayBatch)) {
+                    final RecordTimestamp record = RecordTimestamp.fromByteBuffer(hint.getValue());
+                    handOff(node, hint.getKey(), record);
+                    dao.getHints().remove(node, hint.getKey(), record.getTimestamp());
+                }
+            } catch (IOException e) {
+                logger.debug("hints are not handed off to " + node, e);
+            }
+        }
+    }
+
+    /**
+     * Send a hint as a repair sub-batch, its key is sent as is, whatever bytes it has.
+     * A hint refused by the node would fail on every round, so it is dropped instead of retried.
+     *
+     * @throws IOException if the node is not reachable or overloaded, the hint is retried later
+     */
+    private void handOff(final String node,
+                         final ByteBuffer key,
+                         final RecordTimestamp record) throws IOException {
+        final Mutation mutation = record.isValue() ? Mutation.upsert(key, record.getValue()) : Mutation.remove(key);
+        final Response response;
+        try {
+            response = postBatch(node, BATCH_WRITE_URL, BatchFrames.encodeMutations(List.of(mutation)),
+                    TIMESTAMP_HEADER + record.getTimestamp(), REPAIR_HEADER).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException || e.getCause() instanceof RejectedExecutionException) {
+                throw new IOException("can't hand off hint to " + node, e.getCause());
+            }
+            logger.warn("hint to " + node + " is dropped", e.getCause());
+            return;
+        }
+        if (response.getStatus() >= 500) {
+            throw new IOException("unexpected status " + response.getStatus());
+        }
+        if (response.getStatus() != 200) {
+            logger.warn("hint to " + node + " is dropped, status " + response.getStatus());
+        }
     }
 
     /**
@@ -59,42 +200,63 @@ public class RequestCoordinators {
      * @param request request
      * @param acks amount of acks
      * @param isProxy -determine if request sent by proxying or not
-     * @return Response
+     * @return future with Response
      */
-    public Response putRequestCoordinate(final String[] replicaNodes,
-                                         final Request request,
-                                         final int acks,
-                                         final boolean isProxy) throws IOException {
+    public CompletableFuture<Response> putRequestCoordinate(final String[] replicaNodes,
+                                                            final Request request,
+                                                            final int acks,
+                                                            final boolean isProxy) {
         final String id = request.getParameter("id=");
         final var key = ByteBuffer.wrap(id.getBytes(Charsets.UTF_8));
+        final byte[] body = request.getBody();
+        if (isProxy && request.getHeader(REPAIR_HEADER) != null) {
+            return localRepair(key, RecordTimestamp.fromValue(ByteBuffer.wrap(body), timestampOf(request)),
+                    Response.CREATED);
+        }
         if (isProxy) {
-            dao.upsertWithTimestamp(key, ByteBuffer.wrap(request.getBody()));
-            return new Response(Response.CREATED, Response.EMPTY);
+            return localPut(key, body, timestampOf(request), replicaWorkers);
         }
-        int acksCounter = 0;
+        final long timestamp = System.currentTimeMillis();
+        final List<CompletableFuture<Response>> futures = new ArrayList<>(replicaNodes.length);
         for (final String node : replicaNodes) {
-            try {
-                if (node.equals(nodes.getCurrentNodeId())) {
-                    dao.upsertWithTimestamp(key, ByteBuffer.wrap(request.getBody()));
-                    acksCounter++;
-                } else {
-                    final Response response = clusterClients.get(node)
-                            .put(URL + id, request.getBody(), PROXY_HEADER);
-                    final Response responseToCheck = new Response(Response.CREATED);
-                    if (response.getStatus() == responseToCheck.getStatus()) {
-                        acksCounter++;
-                    }
-                }
-            } catch (HttpException | PoolException | InterruptedException e) {
-                logger.error("error in putting", e);
+            if (node.equals(nodes.getCurrentNodeId())) {
+                futures.add(localPut(key, body, timestamp, workers));
+            } else {
+                final CompletableFuture<Response> write = replicationClients.containsKey(node)
+                        ? replicationClients.get(node).put(key, ByteBuffer.wrap(body), timestamp)
+                                .thenApply(done -> new Response(Response.CREATED, Response.EMPTY))
+                        : expectStatus(clusterClients.get(node)
+                                .put(entityUri(id), body, PROXY_HEADER, TIMESTAMP_HEADER + timestamp), 201);
+                futures.add(hinted(node, key, RecordTimestamp.fromValue(ByteBuffer.wrap(body), timestamp),
+                        remote(node, write)));
             }
         }
-        if (acksCounter >= acks) {
+        return ReplicaFutures.atLeast(futures, acks).handle((responses, error) -> {
+            if (error == null) {
+                return new Response(Response.CREATED, Response.EMPTY);
+            } else {
+                return failed(error, "not enough replicas".getBytes(Charsets.UTF_8));
+            }
+        });
+    }
+
+    private CompletableFuture<Response> localRepair(final ByteBuffer key,
+                                                    final RecordTimestamp record,
+                                                    final String status) {
+        return ReplicaFutures.async(() -> {
+            dao.repairWithTimestamp(key, record);
+            return new Response(status, Response.EMPTY);
+        }, replicaWorkers);
+    }
+
+    private CompletableFuture<Response> localPut(final ByteBuffer key,
+                                                 final byte[] body,
+                                                 final long timestamp,
+                                                 final Executor executor) {
+        return ReplicaFutures.async(() -> {
+            dao.upsertWithTimestamp(key, ByteBuffer.wrap(body), timestamp);
             return new Response(Response.CREATED, Response.EMPTY);
-        } else {
-            final String error = "not enough replicas";
-            return new Response(Response.GATEWAY_TIMEOUT, error.getBytes(Charsets.UTF_8));
-        }
+        }, executor);
     }
 
     /**
@@ -104,36 +266,193 @@ public class RequestCoordinators {
      * @param id from request
      * @param acks amount of acks
      * @param isProxy -determine if request sent by proxying or not
-     * @return Response
+     * @return future with Response
      */
-    public Response getRequestCoordinate(final String[] replicaNodes,
-                                         final String id,
-                                         final int acks,
-                                         final boolean isProxy) throws IOException {
+    public CompletableFuture<Response> getRequestCoordinate(final String[] replicaNodes,
+                                                            final String id,
+                                                            final int acks,
+                                                            final boolean isProxy) {
         final var key = ByteBuffer.wrap(id.getBytes(Charsets.UTF_8));
-        final List<RecordTimestamp> responses = new ArrayList<>(replicaNodes.length);
         if (isProxy) {
-           try {
-               return processIfProxy(replicaNodes, id, responses, key);
-           } catch (HttpException | PoolException | InterruptedException e) {
-               logger.error("error in putting", e);
+            return ReplicaFutures.async(() -> getMethodWrapper(key, false), replicaWorkers);
+        }
+        if (acks == 1 && Arrays.asList(replicaNodes).contains(nodes.getCurrentNodeId())) {
+            // the local replica alone is enough, other replicas are not asked at all
+            return read(nodes.getCurrentNodeId(), id, key, false).handle((record, error) -> error == null
+                    ? responsesProcessing(List.of(record))
+                    : failed(error, Response.EMPTY));
+        }
+        if (digestReads && replicaNodes.length > 1) {
+            return digestRead(replicaNodes, id, key, acks);
+        }
+        final List<String> replicas = preferLocal(replicaNodes);
+        return quorum(replicas, acks, node -> read(node, id, key, false)
+                .thenApply(record -> Map.entry(node, record))).handle((replies, error) -> {
+            if (error == null) {
+                final List<RecordTimestamp> records = new ArrayList<>(replies.size());
+                replies.forEach(reply -> records.add(reply.getValue()));
+                final RecordTimestamp newest = RecordTimestamp.mergeRecords(records);
+                repair(id, key, newest, replies);
+                return responsesProcessing(List.of(newest));
+            } else {
+                return failed(error, Response.EMPTY);
+            }
+        });
+    }
 
-           }
+    /**
+     * Read full value from one replica, the local one if it is a replica, and digests from the others.
+     * If a digest is newer than the full value, the value is read once more from the replica of the digest.
+     */
+    private CompletableFuture<Response> digestRead(final String[] replicaNodes,
+                                                   final String id,
+                                                   final ByteBuffer key,
+                                                   final int acks) {
+        final List<String> replicas = preferLocal(replicaNodes);
+        final String dataNode = replicas.get(0);
+        return quorum(replicas, acks, node -> read(node, id, key, !node.equals(dataNode))
+                .thenApply(record -> Map.entry(node, record))).thenCompose(replies -> {
+            String newestNode = null;
+            RecordTimestamp newest = RecordTimestamp.getEmptyRecord();
+            RecordTimestamp data = null;
+            for (final Map.Entry<String, RecordTimestamp> reply : replies) {
+                final RecordTimestamp record = reply.getValue();
+                if (reply.getKey().equals(dataNode)) {
+                    data = record;
+                }
+                if (!record.isMissing() && record.getTimestamp() > newest.getTimestamp()) {
+                    newest = record;
+                    newestNode = reply.getKey();
+                }
+            }
+            if (!newest.isValue()) {
+                repair(id, key, newest, replies);
+                return CompletableFuture.completedFuture(responsesProcessing(List.of(newest)));
+            }
+            if (data != null && data.isValue() && data.getTimestamp() == newest.getTimestamp()) {
+                repair(id, key, data, replies);
+                return CompletableFuture.completedFuture(responsesProcessing(List.of(data)));
+            }
+            // the full value is missing or older than a digest
+            return read(newestNode, id, key, false).thenApply(record -> {
+                repair(id, key, record, replies);
+                return responsesProcessing(List.of(record));
+            });
+        }).exceptionally(error -> failed(error, Response.EMPTY));
+    }
+
+    /**
+     * Push the newest record with its original timestamp to replicas which replied with older ones.
+     * Runs with readRepairChance on repair workers, the response to client doesn't wait for it.
+     *
+     * @param id id of the record
+     * @param key key of the id
+     * @param newest newest record, with value if it is not a tombstone
+     * @param replies replies of replicas, values of digests are not used
+     */
+    private void repair(final String id,
+                        final ByteBuffer key,
+                        final RecordTimestamp newest,
+                        final List<Map.Entry<String, RecordTimestamp>> replies) {
+        if (newest.isMissing() || ThreadLocalRandom.current().nextDouble() >= readRepairChance) {
+            return;
+        }
+        for (final Map.Entry<String, RecordTimestamp> reply : replies) {
+            if (reply.getValue().getTimestamp() < newest.getTimestamp()) {
+                remote(reply.getKey(), ReplicaFutures.async(() -> {
+                    repairReplica(reply.getKey(), id, key, newest);
+                    return null;
+                }, repairWorkers));
+            }
+        }
+    }
+
+    private void repairReplica(final String node,
+                               final String id,
+                               final ByteBuffer key,
+                               final RecordTimestamp newest) throws IOException {
+        if (node.equals(nodes.getCurrentNodeId())) {
+            dao.repairWithTimestamp(key, newest);
+            return;
         }
-        int acksCounter = 0;
+        final String timestamp = TIMESTAMP_HEADER + newest.getTimestamp();
+        final CompletableFuture<Response> response = newest.isValue()
+                ? expectStatus(clusterClients.get(node)
+                        .put(entityUri(id), newest.getValueInByteFormat(), PROXY_HEADER, REPAIR_HEADER, timestamp), 201)
+                : expectStatus(clusterClients.get(node)
+                        .delete(entityUri(id), PROXY_HEADER, REPAIR_HEADER, timestamp), 202);
+        try {
+            // repair workers wait for their calls, so repairs don't pile up on other nodes
+            response.join();
+        } catch (CompletionException e) {
+            throw new IOException("can't repair " + node, e.getCause());
+        }
+    }
+
+    /**
+     * Replicas with the local node first, it answers the fastest.
+     */
+    private List<String> preferLocal(final String[] replicaNodes) {
+        final List<String> replicas = new ArrayList<>(replicaNodes.length);
         for (final String node : replicaNodes) {
-            try {
-                responses.addAll(processNode(node, id, key));
-                acksCounter++;
-            } catch (HttpException | PoolException | InterruptedException e) {
-                logger.error("error in getting", e);
+            if (node.equals(nodes.getCurrentNodeId())) {
+                replicas.add(0, node);
+            } else {
+                replicas.add(node);
             }
         }
-        if (acksCounter >= acks) {
-            return responsesProcessing(responses);
-        } else {
-            return new Response(Response.GATEWAY_TIMEOUT, Response.EMPTY);
+        return replicas;
+    }
+
+    /**
+     * Wait for acks replies of reads. Hedged reads start on acks replicas and send the read to
+     * more replicas only if a replica is slow or fails, otherwise all replicas are read at once.
+     */
+    private <T> CompletableFuture<List<T>> quorum(final List<String> replicas,
+                                                  final int acks,
+                                                  final Function<String, CompletableFuture<T>> read) {
+        if (hedgedReads) {
+            return HedgedRead.start(replicas, acks, read, node -> latencies.computeIfAbsent(node,
+                    n -> new ReplicaLatency(hedgePercentile, hedgeDefaultNanos)), hedgeStats);
+        }
+        final List<CompletableFuture<T>> futures = new ArrayList<>(replicas.size());
+        for (final String node : replicas) {
+            futures.add(read.apply(node));
         }
+        return ReplicaFutures.atLeast(futures, acks);
+    }
+
+    HedgeStats getHedgeStats() {
+        return hedgeStats;
+    }
+
+    /**
+     * Read record of a replica.
+     *
+     * @param node replica
+     * @param id id to read
+     * @param key key of the id
+     * @param digest read only type and timestamp of the record
+     * @return future with record, empty one if replica has no record
+     */
+    private CompletableFuture<RecordTimestamp> read(final String node,
+                                                    final String id,
+                                                    final ByteBuffer key,
+                                                    final boolean digest) {
+        if (node.equals(nodes.getCurrentNodeId())) {
+            return ReplicaFutures.async(() -> {
+                final RecordTimestamp record = dao.getWithTimestamp(key);
+                return digest ? record.toDigest() : record;
+            }, workers);
+        }
+        final ReplicationClient replication = replicationClients.get(node);
+        if (replication != null) {
+            return remote(node, digest ? replication.digest(key) : replication.get(key));
+        }
+        final CompletableFuture<Response> response = digest
+                ? clusterClients.get(node).get(entityUri(id), PROXY_HEADER, DIGEST_HEADER)
+                : clusterClients.get(node).get(entityUri(id), PROXY_HEADER);
+        return remote(node, response.thenCompose(result -> ReplicaFutures.call(() -> recordOf(node, result))));
     }
 
     private Response responsesProcessing(final List<RecordTimestamp> responses) {
@@ -152,96 +471,532 @@ public class RequestCoordinators {
             return new Response(Response.NOT_FOUND, Response.EMPTY);
         }
     }
-    
+
+    /**
+     * Range of the whole cluster. Every node owns part of any range, so all nodes are scanned.
+     * Local scan is opened on a worker, as it takes a snapshot and seeks.
+     *
+     * @param start first id, inclusive
+     * @param end last id, exclusive, null for unbounded range
+     * @return future of merged records with values without timestamp, completed when the first pages
+     *     of all nodes are here, fails if some node is not available
+     */
+    public CompletableFuture<MergedRange> rangeCoordinate(@NotNull final String start, final String end) {
+        return rangeCoordinate(start, end, RANGE_PAGE_SIZE);
+    }
+
+    private CompletableFuture<MergedRange> rangeCoordinate(@NotNull final String start,
+                                                           @Nullable final String end,
+                                                           final int remotePageSize) {
+        final List<RemoteRange> remotes = new ArrayList<>(clusterClients.size());
+        for (final PeerClient client : clusterClients.values()) {
+            remotes.add(new RemoteRange(client, start, end, remotePageSize, RANGE_PAGE_SIZE));
+        }
+        final ByteBuffer to = end == null ? null : keyOf(end);
+        final CompletableFuture<MergedRange> opened = ReplicaFutures.async(
+                () -> new MergedRange(dao.rangeWithTimestamp(keyOf(start), to, true), remotes), workers);
+        opened.whenComplete((range, error) -> {
+            if (error != null) {
+                remotes.forEach(RemoteRange::cancel);
+            }
+        });
+        return opened.thenCompose(range -> range.started().handle((done, error) -> {
+            if (error != null) {
+                closeRange(range);
+                throw new CompletionException(error);
+            }
+            return range;
+        }));
+    }
+
+    /**
+     * Page of a range requested by client, read one record past the limit to find the next page.
+     * Single node reads all pages of a range from one leased snapshot while the lease is alive,
+     * in cluster every page reads the latest data of all nodes.
+     *
+     * @param start first id, inclusive, unless the cursor is given
+     * @param end last id, exclusive, null for unbounded range
+     * @param limit max amount of records
+     * @param cursor cursor returned with the previous page
+     * @return future with the page
+     */
+    public CompletableFuture<RangePage> rangePage(@NotNull final String start,
+                                                  @Nullable final String end,
+                                                  final int limit,
+                                                  @Nullable final RangeCursor cursor) {
+        if (!clusterClients.isEmpty()) {
+            return clusterRangePage(cursor == null ? start : cursor.getId(), end, limit);
+        }
+        return ReplicaFutures.async(() -> {
+            final long lease = dao.leaseSnapshot(cursor == null ? 0 : cursor.getSnapshot());
+            final ByteBuffer from = cursor == null ? keyOf(start) : cursor.getKey();
+            final List<Record> records = new ArrayList<>();
+            try (RocksDBIterator range = dao.range(from, end == null ? null : keyOf(end), lease)) {
+                while (records.size() <= limit && range.hasNext()) {
+                    records.add(range.next());
+                }
+            }
+            final RangePage page = RangePage.of(records, limit, lease);
+            if (page.getNext() == null) {
+                // no page reads the snapshot anymore, so it does not wait for expiration
+                dao.endSnapshotLease(lease);
+            }
+            return page;
+        }, workers);
+    }
+
+    private CompletableFuture<RangePage> clusterRangePage(@NotNull final String start,
+                                                          @Nullable final String end,
+                                                          final int limit) {
+        final CompletableFuture<RangePage> page = new CompletableFuture<>();
+        // limit + 1 records of every node fill the page unless tombstones hide them, so a small page
+        // starts with small remote pages, RemoteRange needs at least two records per page to continue
+        final int remotePageSize = Math.max(2, Math.min(limit, RANGE_PAGE_SIZE - 1) + 1);
+        rangeCoordinate(start, end, remotePageSize).whenComplete((range, error) -> {
+            if (error == null) {
+                fillPage(range, new ArrayList<>(), limit, page);
+            } else {
+                page.completeExceptionally(error);
+            }
+        });
+        return page;
+    }
+
+    /**
+     * Take records of merged range without blocking on pages of other nodes,
+     * filling continues on arrival of the awaited page.
+     */
+    private static void fillPage(@NotNull final MergedRange range,
+                                 @NotNull final List<Record> records,
+                                 final int limit,
+                                 @NotNull final CompletableFuture<RangePage> page) {
+        try {
+            while (records.size() <= limit) {
+                final CompletableFuture<?> ready = range.whenReady();
+                if (ready != null) {
+                    ready.whenComplete((done, error) -> fillPage(range, records, limit, page));
+                    return;
+                }
+                if (!range.hasNext()) {
+                    break;
+                }
+                records.add(range.next());
+            }
+            closeRange(range);
+            page.complete(RangePage.of(records, limit, 0));
+        } catch (CompletionException e) {
+            closeRange(range);
+            page.completeExceptionally(e);
+        }
+    }
+
+    private static void closeRange(@NotNull final MergedRange range) {
+        try {
+            range.close();
+        } catch (IOException e) {
+            logger.error("error while closing range", e);
+        }
+    }
+
+    /**
+     * Page of local range requested by coordinator.
+     *
+     * @param start first id, inclusive
+     * @param end last id, exclusive, null for unbounded range
+     * @param limit max amount of records
+     * @return future with response of key and timestamped value frames for every record
+     */
+    public CompletableFuture<Response> rangeProxy(@NotNull final String start, final String end, final int limit) {
+        return ReplicaFutures.async(() -> {
+            final List<byte[]> frames = new ArrayList<>();
+            // tombstones are sent too, they hide older values of other nodes
+            try (RocksDBIterator range = dao.rangeWithTimestamp(keyOf(start), end == null ? null : keyOf(end), true)) {
+                for (int i = 0; i < limit && range.hasNext(); i++) {
+                    final Record record = range.next();
+                    frames.add(ByteBufferUtils.fromByteToArray(record.getKey()));
+                    frames.add(range.getRecordTimestamp().toBytes());
+                }
+            }
+            return new Response(Response.OK, BatchFrames.encode(frames));
+        }, replicaWorkers);
+    }
+
+    /**
+     * Control batch get request, keys are grouped by replica node and every node gets one sub-request.
+     *
+     * @param ids ids to read
+     * @param acks amount of acks for every id
+     * @param from amount of replicas of every id
+     * @return future with found records in order of ids, fails if some id has not enough acks
+     */
+    public CompletableFuture<List<Record>> batchGetCoordinate(final List<String> ids,
+                                                             final int acks,
+                                                             final int from) {
+        final Map<String, List<String>> idsByNode = new HashMap<>();
+        for (final String id : ids) {
+            for (final String node : nodes.getReplics(from, keyOf(id))) {
+                idsByNode.computeIfAbsent(node, n -> new ArrayList<>()).add(id);
+            }
+        }
+        final Map<String, CompletableFuture<List<RecordTimestamp>>> replies = new HashMap<>();
+        for (final Map.Entry<String, List<String>> entry : idsByNode.entrySet()) {
+            final String node = entry.getKey();
+            final List<String> nodeIds = entry.getValue();
+            if (node.equals(nodes.getCurrentNodeId())) {
+                replies.put(node, ReplicaFutures.async(() -> localBatchGet(nodeIds), workers));
+            } else {
+                replies.put(node, remote(node, remoteBatchGet(node, nodeIds)));
+            }
+        }
+        final CompletableFuture<?>[] all = replies.values().stream()
+                .map(reply -> reply.exceptionally(error -> null))
+                .toArray(CompletableFuture<?>[]::new);
+        return CompletableFuture.allOf(all).thenCompose(done -> {
+            final Map<String, List<RecordTimestamp>> byId = new HashMap<>();
+            replies.forEach((node, reply) -> {
+                final List<RecordTimestamp> records = reply.getNow(null);
+                if (records != null) {
+                    final List<String> nodeIds = idsByNode.get(node);
+                    for (int i = 0; i < nodeIds.size(); i++) {
+                        byId.computeIfAbsent(nodeIds.get(i), id -> new ArrayList<>()).add(records.get(i));
+                    }
+                }
+            });
+            return mergeBatch(ids, byId, acks);
+        });
+    }
+
+    private static CompletableFuture<List<Record>> mergeBatch(final List<String> ids,
+                                                              final Map<String, List<RecordTimestamp>> byId,
+                                                              final int acks) {
+        final List<Record> records = new ArrayList<>();
+        for (final String id : ids) {
+            final List<RecordTimestamp> replicas = byId.getOrDefault(id, List.of());
+            if (replicas.size() < acks) {
+                return CompletableFuture.failedFuture(new IOException("not enough replicas for " + id));
+            }
+            final RecordTimestamp merged = RecordTimestamp.mergeRecords(replicas);
+            if (merged.isValue()) {
+                records.add(Record.of(keyOf(id), merged.getValue()));
+            }
+        }
+        return CompletableFuture.completedFuture(records);
+    }
+
+    /**
+     * Read ids of batch sent by coordinator.
+     *
+     * @param ids ids to read
+     * @return future with response of records with timestamp in frames, in order of ids
+     */
+    public CompletableFuture<Response> batchGetProxy(final List<String> ids) {
+        return ReplicaFutures.async(() -> {
+            final List<byte[]> frames = new ArrayList<>(ids.size());
+            for (final RecordTimestamp record : localBatchGet(ids)) {
+                frames.add(record.toBytes());
+            }
+            return new Response(Response.OK, BatchFrames.encode(frames));
+        }, replicaWorkers);
+    }
+
+    private List<RecordTimestamp> localBatchGet(final List<String> ids) throws IOException {
+        final List<ByteBuffer> keys = new ArrayList<>(ids.size());
+        for (final String id : ids) {
+            keys.add(keyOf(id));
+        }
+        return dao.getAllWithTimestamp(keys);
+    }
+
+    private CompletableFuture<List<RecordTimestamp>> remoteBatchGet(final String node, final List<String> ids) {
+        return expectStatus(postBatch(node, BATCH_GET_URL, BatchFrames.joinIds(ids)), 200).thenCompose(response ->
+                ReplicaFutures.call(() -> batchRecordsOf(node, ids, response)));
+    }
+
+    private static List<RecordTimestamp> batchRecordsOf(final String node,
+                                                        final List<String> ids,
+                                                        final Response response) throws IOException {
+        final List<byte[]> frames = BatchFrames.decode(response.getBody());
+        if (frames.size() != ids.size()) {
+            throw new IOException("replica " + node + " returned " + frames.size() + " of " + ids.size());
+        }
+        final List<RecordTimestamp> records = new ArrayList<>(frames.size());
+        for (final byte[] frame : frames) {
+            records.add(RecordTimestamp.fromBytes(frame));
+        }
+        return records;
+    }
+
+    /**
+     * Control batch write request, mutations are grouped by replica node and every node
+     * gets one sub-batch applied as a single WriteBatch.
+     *
+     * @param mutations mutations to apply
+     * @param acks amount of acks for every mutation
+     * @param from amount of replicas of every key
+     * @return future with response of one status per line in order of mutations:
+     *     201 or 202 if mutation got enough acks, 504 otherwise
+     */
+    public CompletableFuture<Response> batchWriteCoordinate(final List<Mutation> mutations,
+                                                            final int acks,
+                                                            final int from) {
+        final long timestamp = System.currentTimeMillis();
+        final Map<String, List<Integer>> indexesByNode = new HashMap<>();
+        for (int i = 0; i < mutations.size(); i++) {
+            for (final String node : nodes.getReplics(from, mutations.get(i).getKey())) {
+                indexesByNode.computeIfAbsent(node, n -> new ArrayList<>()).add(i);
+            }
+        }
+        final Map<String, CompletableFuture<Boolean>> replies = new HashMap<>();
+        for (final Map.Entry<String, List<Integer>> entry : indexesByNode.entrySet()) {
+            final String node = entry.getKey();
+            final List<Mutation> subBatch = new ArrayList<>(entry.getValue().size());
+            entry.getValue().forEach(i -> subBatch.add(mutations.get(i)));
+            final CompletableFuture<Response> reply;
+            if (node.equals(nodes.getCurrentNodeId())) {
+                reply = localBatchWrite(subBatch, timestamp, workers);
+            } else {
+                reply = remote(node, expectStatus(postBatch(node, BATCH_WRITE_URL,
+                        BatchFrames.encodeMutations(subBatch), TIMESTAMP_HEADER + timestamp), 200));
+                for (final Mutation mutation : subBatch) {
+                    hinted(node, mutation.getKey(), recordOf(mutation, timestamp), reply);
+                }
+            }
+            replies.put(node, reply.handle((response, error) -> error == null));
+        }
+        return CompletableFuture.allOf(replies.values().toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            final int[] acked = new int[mutations.size()];
+            replies.forEach((node, reply) -> {
+                if (reply.join()) {
+                    indexesByNode.get(node).forEach(i -> acked[i]++);
+                }
+            });
+            final StringBuilder statuses = new StringBuilder();
+            for (int i = 0; i < mutations.size(); i++) {
+                if (acked[i] < acks) {
+                    statuses.append(504);
+                } else {
+                    statuses.append(mutations.get(i).isRemove() ? 202 : 201);
+                }
+                statuses.append('\n');
+            }
+            return new Response(Response.OK, statuses.toString().getBytes(Charsets.UTF_8));
+        });
+    }
+
+    /**
+     * Apply sub-batch sent by coordinator, or write it as repair if the request has repair header,
+     * then records as new or newer are kept.
+     *
+     * @param mutations mutations to apply
+     * @param request request with timestamp of coordinator
+     * @return future with response
+     */
+    public CompletableFuture<Response> batchWriteProxy(final List<Mutation> mutations, final Request request) {
+        final long timestamp = timestampOf(request);
+        if (request.getHeader(REPAIR_HEADER) == null) {
+            return localBatchWrite(mutations, timestamp, replicaWorkers);
+        }
+        return ReplicaFutures.async(() -> {
+            for (final Mutation mutation : mutations) {
+                dao.repairWithTimestamp(mutation.getKey(), recordOf(mutation, timestamp));
+            }
+            return new Response(Response.OK, Response.EMPTY);
+        }, replicaWorkers);
+    }
+
+    private static RecordTimestamp recordOf(final Mutation mutation, final long timestamp) {
+        return mutation.isRemove()
+                ? RecordTimestamp.tombstone(timestamp)
+                : RecordTimestamp.fromValue(mutation.getValue(), timestamp);
+    }
+
+    private CompletableFuture<Response> localBatchWrite(final List<Mutation> mutations,
+                                                        final long timestamp,
+                                                        final Executor executor) {
+        return ReplicaFutures.async(() -> {
+            dao.applyAllWithTimestamp(mutations, timestamp);
+            return new Response(Response.OK, Response.EMPTY);
+        }, executor);
+    }
+
+    /**
+     * Send sub-batch to other node, big batches take longer than default timeout of the client.
+     */
+    private CompletableFuture<Response> postBatch(final String node,
+                                                  final String uri,
+                                                  final byte[] body,
+                                                  final String... headers) {
+        final String[] all = Arrays.copyOf(headers, headers.length + 1);
+        all[headers.length] = PROXY_HEADER;
+        return clusterClients.get(node).post(uri, body, BATCH_TIMEOUT, all);
+    }
+
+    private static ByteBuffer keyOf(final String id) {
+        return ByteBuffer.wrap(id.getBytes(Charsets.UTF_8));
+    }
+
+    /**
+     * Uri of the entity on other node, the id is decoded from the request, so it is encoded again.
+     */
+    private static String entityUri(final String id) {
+        return URL + URLEncoder.encode(id, StandardCharsets.UTF_8);
+    }
+
     /**
      * Control delete request.
      *
      * @param replicaNodes - nodes where created perlicas will be placed
-     * @param id from request
+     * @param request request
      * @param acks amount of acks
      * @param isProxy -determine if request sent by proxying or not
-     * @return Response
+     * @return future with Response
      */
-    public Response deleteRequestCoordinate(final String[] replicaNodes,
-                                            final String id,
-                                            final int acks,
-                                            final boolean isProxy) throws IOException {
+    public CompletableFuture<Response> deleteRequestCoordinate(final String[] replicaNodes,
+                                                               final Request request,
+                                                               final int acks,
+                                                               final boolean isProxy) {
+        final String id = request.getParameter("id=");
+        final var key = ByteBuffer.wrap(id.getBytes(Charsets.UTF_8));
+        if (isProxy && request.getHeader(REPAIR_HEADER) != null) {
+            return localRepair(key, RecordTimestamp.tombstone(timestampOf(request)), Response.ACCEPTED);
+        }
         if (isProxy) {
-            dao.removeWithTimestamp(ByteBuffer.wrap(id.getBytes(Charsets.UTF_8)));
-            return new Response(Response.ACCEPTED, Response.EMPTY);
+            return localDelete(key, timestampOf(request), replicaWorkers);
         }
-        int acksCounter = 0;
-        final var key = ByteBuffer.wrap(id.getBytes(Charsets.UTF_8));
+        final long timestamp = System.currentTimeMillis();
+        final List<CompletableFuture<Response>> futures = new ArrayList<>(replicaNodes.length);
         for (final String node : replicaNodes) {
-            try {
-                if (node.equals(nodes.getCurrentNodeId())) {
-                    dao.removeWithTimestamp(key);
-                    acksCounter++;
-                } else {
-                    final Response response = clusterClients.get(node)
-                            .delete(URL + id, PROXY_HEADER);
-                    final Response responseToCheck = new Response(Response.ACCEPTED);
-                    if (response.getStatus() == responseToCheck.getStatus()) {
-                        acksCounter++;
-                    }
-                }
-            } catch ( HttpException | InterruptedException | PoolException e) {
-                logger.error("error in deleting", e);
+            if (node.equals(nodes.getCurrentNodeId())) {
+                futures.add(localDelete(key, timestamp, workers));
+            } else {
+                final CompletableFuture<Response> write = replicationClients.containsKey(node)
+                        ? replicationClients.get(node).delete(key, timestamp)
+                                .thenApply(done -> new Response(Response.ACCEPTED, Response.EMPTY))
+                        : expectStatus(clusterClients.get(node)
+                                .delete(entityUri(id), PROXY_HEADER, TIMESTAMP_HEADER + timestamp), 202);
+                futures.add(hinted(node, key, RecordTimestamp.tombstone(timestamp), remote(node, write)));
             }
         }
-        if (acksCounter >= acks) {
+        return ReplicaFutures.atLeast(futures, acks).handle((responses, error) -> {
+            if (error == null) {
+                return new Response(Response.ACCEPTED, Response.EMPTY);
+            } else {
+                return failed(error, Response.EMPTY);
+            }
+        });
+    }
+
+    private CompletableFuture<Response> localDelete(final ByteBuffer key,
+                                                    final long timestamp,
+                                                    final Executor executor) {
+        return ReplicaFutures.async(() -> {
+            dao.removeWithTimestamp(key, timestamp);
             return new Response(Response.ACCEPTED, Response.EMPTY);
-        } else {
-            return new Response(Response.GATEWAY_TIMEOUT, Response.EMPTY);
-        }
+        }, executor);
     }
 
     /**
      * Determine action according to request.
+     * Does not block: response is sent to session when enough replicas answered.
      *
      * @param replicaClusters - nodes where created perlicas will be placed
      * @param request request
      * @param acks amount of acks
-     * @param session - current session
+     * @param isProxy -determine if request sent by proxying or not
+     * @return future with response, fails if local work is rejected by overloaded workers
      */
-    public void coordinateRequest(final String[] replicaClusters,
-                                  final Request request,
-                                  final int acks,
-                                  final HttpSession session) throws IOException {
+    public CompletableFuture<Response> coordinateRequest(final String[] replicaClusters,
+                                                         final Request request,
+                                                         final int acks,
+                                                         final boolean isProxy) {
         try {
             switch (request.getMethod()) {
-                case Request.METHOD_GET: {
-                    final String id = request.getParameter("id=");
-                    session.sendResponse(getRequestCoordinate(replicaClusters, id, acks, proxied));
-                    break;
-                    }
-                case Request.METHOD_PUT: {
-                    session.sendResponse(putRequestCoordinate(replicaClusters, request, acks, proxied));
-                    break;
-                    }
-                case Request.METHOD_DELETE:{
+                case Request.METHOD_GET:
                     final String id = request.getParameter("id=");
-                    session.sendResponse(deleteRequestCoordinate(replicaClusters, id, acks, proxied));
-                    break;
-                    }
-                default:{
-                    session.sendError(Response.METHOD_NOT_ALLOWED, "not supported method");
-                    break;
+                    if (isProxy && request.getHeader(DIGEST_HEADER) != null) {
+                        final ByteBuffer key = keyOf(id);
+                        return ReplicaFutures.async(() -> getMethodWrapper(key, true), replicaWorkers);
                     }
+                    return getRequestCoordinate(replicaClusters, id, acks, isProxy);
+                case Request.METHOD_PUT:
+                    return putRequestCoordinate(replicaClusters, request, acks, isProxy);
+                case Request.METHOD_DELETE:
+                    return deleteRequestCoordinate(replicaClusters, request, acks, isProxy);
+                default:
+                    return CompletableFuture.completedFuture(new Response(Response.METHOD_NOT_ALLOWED,
+                            "not supported method".getBytes(Charsets.UTF_8)));
             }
-        } catch (IOException e) {
-            session.sendError(Response.GATEWAY_TIMEOUT, e.getMessage());
+        } catch (NumberFormatException e) {
+            return CompletableFuture.completedFuture(new Response(Response.BAD_REQUEST,
+                    "wrong timestamp".getBytes(Charsets.UTF_8)));
         }
     }
 
+    /**
+     * Response to a request which failed on replicas. Overload of local workers is passed on
+     * as failure, so the service answers 503 and the client retries later.
+     *
+     * @param error failure of the request
+     * @param body body of 504 response
+     * @return 504 response
+     */
+    private static Response failed(final Throwable error, final byte[] body) {
+        if (ReplicaFutures.isOverload(error)) {
+            throw error instanceof CompletionException
+                    ? (CompletionException) error
+                    : new CompletionException(error);
+        }
+        return new Response(Response.GATEWAY_TIMEOUT, body);
+    }
+
+    private static <T> CompletableFuture<T> remote(final String node, final CompletableFuture<T> call) {
+        return call.whenComplete((result, error) -> {
+            if (error != null) {
+                logger.error("error in request to " + node, error);
+            }
+        });
+    }
+
+    private static CompletableFuture<Response> expectStatus(final CompletableFuture<Response> response,
+                                                            final int status) {
+        return response.thenCompose(result -> result.getStatus() == status
+                ? CompletableFuture.completedFuture(result)
+                : CompletableFuture.failedFuture(new IOException("unexpected status " + result.getStatus())));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (hintReplayer != null) {
+            hintReplayer.shutdownNow();
+        }
+        for (final ReplicationClient client : replicationClients.values()) {
+            client.close();
+        }
+    }
+
+    /**
+     * Timestamp of the write chosen by coordinator.
+     *
+     * @param request request of coordinator
+     * @return timestamp, current time if the request has none
+     * @throws NumberFormatException if the timestamp is malformed
+     */
+    private static long timestampOf(final Request request) {
+        final String timestamp = request.getHeader(TIMESTAMP_HEADER);
+        if (timestamp == null) {
+            return System.currentTimeMillis();
+        }
+        return Long.parseLong(timestamp);
+    }
+
     @NotNull
-    private Response getMethodWrapper(final ByteBuffer key) throws IOException {
+    private Response getMethodWrapper(final ByteBuffer key, final boolean digest) throws IOException {
         try {
             final RecordTimestamp record = dao.getWithTimestamp(key);
             if(record.isMissing()){
                 throw new NoSuchElementException("no element");
             }
-            final byte[] response = record.toBytes();
+            final byte[] response = digest ? record.toDigest().toBytes() : record.toBytes();
             return new Response(Response.OK, response);
         } catch (NoSuchElementException exp) {
             return new Response(Response.NOT_FOUND, Response.EMPTY);
@@ -249,56 +1004,19 @@ public class RequestCoordinators {
     }
 
     /**
-     * Get correct response for get request if proxied.
-     *
-     * @param replicaNodes - nodes
-     * @param id - id of node
-     * @param responses - list with responses to fill and merge later
-     * @param key - key of request
-     */
-    public Response processIfProxy(final String[] replicaNodes,
-                                    final String id,
-                                    final List<RecordTimestamp> responses,
-                                    final ByteBuffer key)
-            throws InterruptedException, IOException, HttpException, PoolException {
-        for (final String node : replicaNodes) {
-            responses.addAll(processNode(node, id, key));
-        }
-        final RecordTimestamp mergedResponse = RecordTimestamp.mergeRecords(responses);
-        if (mergedResponse.isValue()) {
-            return new Response(Response.OK, mergedResponse.getValue().array());
-        } else {
-            return mergedResponceIsDeletedChecker(mergedResponse);
-        }
-    }
-
-    /**
-     *To process each node and get response.
+     * Record of a replica from its GET response.
      *
-     * @param node - node that is used currenty
-     * @param id - id of node
-     * @param key - key of request
+     * @param node replica
+     * @param response response of the replica
+     * @return record, empty one if replica has no record
      */
-    public List<RecordTimestamp> processNode(final String node,
-                                             final String id,
-                                             final ByteBuffer key)
-            throws InterruptedException, IOException, HttpException, PoolException {
-        Response getResponse;
-        final List<RecordTimestamp> responses = new ArrayList<>();
-        if (node.equals(nodes.getCurrentNodeId())) {
-            getResponse = getMethodWrapper(key);
-
-        } else {
-            getResponse = clusterClients.get(node)
-                    .get(URL + id, PROXY_HEADER);
-        }
-        if (getResponse.getStatus() == 404 && getResponse.getBody().length == 0) {
-            responses.add(RecordTimestamp.getEmptyRecord());
-        } else if (getResponse.getStatus() == 500) {
-            return responses;
+    private static RecordTimestamp recordOf(final String node, final Response response) throws IOException {
+        if (response.getStatus() == 404 && response.getBody().length == 0) {
+            return RecordTimestamp.getEmptyRecord();
+        } else if (response.getStatus() == 500) {
+            throw new IOException("replica " + node + " failed");
         } else {
-            responses.add(RecordTimestamp.fromBytes(getResponse.getBody()));
+            return RecordTimestamp.fromBytes(response.getBody());
         }
-        return responses;
     }
 }
@@ -1,18 +1,15 @@
 package ru.mail.polis.service.luckydaemon;
 
 import com.google.common.base.Charsets;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import one.nio.http.Response;
 import one.nio.http.HttpServer;
-import one.nio.http.HttpClient;
 import one.nio.http.HttpSession;
 import one.nio.http.HttpServerConfig;
 import one.nio.http.Path;
 import one.nio.http.Param;
 import one.nio.http.Request;
 import one.nio.net.Socket;
-import one.nio.net.ConnectionString;
 import one.nio.server.AcceptorConfig;
 
 import org.apache.commons.logging.Log;
@@ -20,26 +17,34 @@ import org.apache.commons.logging.LogFactory;
 
 import org.jetbrains.annotations.NotNull;
 
+import ru.mail.polis.Record;
 import ru.mail.polis.dao.DAO;
+import ru.mail.polis.dao.DAOImpl;
+import ru.mail.polis.dao.Mutation;
 import ru.mail.polis.service.Service;
+import ru.mail.polis.service.ServiceConfig;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.NoSuchElementException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
 
 public class ServiceImpl extends HttpServer implements Service {
     private static final Log logger = LogFactory.getLog(ServiceImpl.class);
     private final DAO dao;
-    private final Executor exec;
+    private final WorkerPools pools;
+    private final BoundedExecutor exec;
     private final ClustersNodes nodes;
-    private final Map<String, HttpClient> clusterClients;
     private final int clusterSize;
     private final Replicas defaultRF;
+    private final RequestCoordinators coordinator;
+    private final ReplicationServer replicationServer;
+    private final int retryAfterSeconds;
     private static final String PROXY_HEADER = "X-OK-Proxy: True";
 
 
@@ -50,19 +55,35 @@ public class ServiceImpl extends HttpServer implements Service {
      * @param dao  dao
      * @param nodes  nodes in use
      * @param clusterClients map of client and nodes
+     * @param serviceConfig tuning of work queues and of replication
      */
     public ServiceImpl(@NotNull final HttpServerConfig config,
                        @NotNull final DAO dao,
                        @NotNull final ClustersNodes nodes,
-                       @NotNull final Map<String, HttpClient> clusterClients) throws IOException {
+                       @NotNull final Map<String, PeerClient> clusterClients,
+                       @NotNull final ServiceConfig serviceConfig) throws IOException {
         super(config);
         this.dao = dao;
-        this.exec = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
-                new ThreadFactoryBuilder().setNameFormat("exec-%d").build());
+        this.pools = new WorkerPools(serviceConfig);
+        this.exec = pools.client();
+        this.retryAfterSeconds = serviceConfig.retryAfterSeconds;
         this.nodes = nodes;
-        this.clusterClients = clusterClients;
         this.clusterSize = nodes.getNodes().size();
         this.defaultRF = new Replicas(nodes.getNodes().size() / 2 + 1, nodes.getNodes().size());
+        if (serviceConfig.replicationPortOffset > 0 && !clusterClients.isEmpty()) {
+            final int replicationPort = config.acceptors[0].port + serviceConfig.replicationPortOffset;
+            try {
+                this.replicationServer = new ReplicationServer(replicationPort, (DAOImpl) dao, pools.replica());
+            } catch (IOException e) {
+                // HTTP port is already bound, release it, the service is never started
+                super.stop();
+                pools.shutdown();
+                throw new IOException("can't bind replication port " + replicationPort, e);
+            }
+        } else {
+            this.replicationServer = null;
+        }
+        this.coordinator = new RequestCoordinators(dao, nodes, clusterClients, serviceConfig, pools);
     }
 
     /**
@@ -74,19 +95,33 @@ public class ServiceImpl extends HttpServer implements Service {
      */
     public static Service create(final int port, @NotNull final DAO dao,
                                  @NotNull final ClustersNodes nodes) throws IOException {
+        return create(port, dao, nodes, new ServiceConfig());
+    }
+
+    /**
+     * Method to set parameters and create an object.
+     *
+     * @param port -port
+     * @param dao  dao
+     * @param nodes  nodes
+     * @param serviceConfig tuning of work queues
+     */
+    public static Service create(final int port, @NotNull final DAO dao,
+                                 @NotNull final ClustersNodes nodes,
+                                 @NotNull final ServiceConfig serviceConfig) throws IOException {
         final var acceptor = new AcceptorConfig();
         final var config = new HttpServerConfig();
         acceptor.port = port;
         config.acceptors = new AcceptorConfig[]{acceptor};
         config.maxWorkers = Runtime.getRuntime().availableProcessors();
         config.queueTime = 10;
-        final Map<String, HttpClient> clusterClients = new HashMap<>();
+        final Map<String, PeerClient> clusterClients = new HashMap<>();
         for (final String st : nodes.getNodes()) {
             if (!nodes.getCurrentNodeId().equals(st) && !clusterClients.containsKey(st)) {
-                clusterClients.put(st, new HttpClient(new ConnectionString(st + "?timeout=100")));
+                clusterClients.put(st, new PeerClient(st, serviceConfig));
             }
         }
-        return new ServiceImpl(config, dao, nodes, clusterClients);
+        return new ServiceImpl(config, dao, nodes, clusterClients, serviceConfig);
     }
 
     @Path("/v0/status")
@@ -117,17 +152,23 @@ public class ServiceImpl extends HttpServer implements Service {
         if (request.getHeader(PROXY_HEADER) != null) {
             isProxy = true;
         }
+        if (shed(request, session)) {
+            return;
+        }
         final Replicas rf = Replicas.calculateRF(replicas, clusterSize, session, defaultRF);
+        if (rf == null) {
+            return;
+        }
         final ByteBuffer key = ByteBuffer.wrap(id.getBytes(StandardCharsets.UTF_8));
         if ( nodes.getNodes().size() > 1) {
-            final RequestCoordinators Coordinator = new RequestCoordinators(dao, nodes, clusterClients, isProxy);
             final String[] replicaClusters;
             if (isProxy) {
                 replicaClusters = new String[]{nodes.getCurrentNodeId()};
             } else {
                 replicaClusters = nodes.getReplics(rf.getFrom(), key);
             }
-            Coordinator.coordinateRequest(replicaClusters, request, rf.getAck(), session);
+            coordinator.coordinateRequest(replicaClusters, request, rf.getAck(), isProxy).whenComplete(
+                    (response, error) -> sendResult(session, error, () -> session.sendResponse(response)));
         } else {
             executeAsyncRequest(request, key, session);
         }
@@ -183,40 +224,110 @@ public class ServiceImpl extends HttpServer implements Service {
     }
 
     private void responseSend(@NotNull final Resp response, @NotNull final HttpSession session){
-        exec.execute(() -> {
+        ReplicaFutures.async(response::response, exec).whenComplete((result, error) -> {
             try {
-                session.sendResponse(response.response());
-            } catch (IOException e) {
-                try {
+                if (error == null) {
+                    session.sendResponse(result);
+                } else if (ReplicaFutures.isOverload(error)) {
+                    session.sendResponse(overloaded());
+                } else {
                     session.sendError(Response.INTERNAL_ERROR, "error while sending async response");
-                } catch (IOException ex) {
-                    logger.error(ex);
                 }
+            } catch (IOException e) {
+                logger.error(e);
             }
         });
     }
 
     /**
-     * Access to entities.
+     * Reject request of client at once if the work queue is full, internal requests are never shed here
+     * because their coordinator would fail the whole request.
+     *
+     * @return true if the request is rejected
+     */
+    private boolean shed(@NotNull final Request request, @NotNull final HttpSession session) throws IOException {
+        if (request.getHeader(PROXY_HEADER) != null || !exec.isSaturated()) {
+            return false;
+        }
+        session.sendResponse(overloaded());
+        return true;
+    }
+
+    private Response overloaded() {
+        final Response response = new Response(Response.SERVICE_UNAVAILABLE, Response.EMPTY);
+        response.addHeader("Retry-After: " + retryAfterSeconds);
+        return response;
+    }
+
+    /**
+     * Queue depth and shed requests of local work of clients.
+     *
+     * @return stats of the work queue
+     */
+    public WorkQueueStats getWorkQueueStats() {
+        return exec.getStats();
+    }
+
+    /**
+     * Queue depth and shed requests of local work of replica requests sent by other nodes.
+     *
+     * @return stats of the replica work queue
+     */
+    public WorkQueueStats getReplicaQueueStats() {
+        return pools.replica().getStats();
+    }
+
+    /**
+     * Speculative reads sent to extra replicas and how often they answered first.
+     *
+     * @return stats of hedged reads
+     */
+    public HedgeStats getHedgeStats() {
+        return coordinator.getHedgeStats();
+    }
+
+    /**
+     * Access to entities. In cluster the ranges of all nodes are merged.
+     * With limit or cursor the range is paged: response has at most limit records
+     * and {@code X-OK-Cursor} header if there are more, the next page is requested
+     * with the same end and the cursor instead of start.
      *
      * @param  start first key
      * @param end  last key
+     * @param limit max amount of records
+     * @param cursor cursor returned with the previous page
+     * @param request request
      * @param session session
      */
-    @Path("/v0/entities")
+    @Path(RequestCoordinators.RANGE_URL)
     public void entities(@Param("start") final String start,
                          @Param("end") final String end,
+                         @Param("limit") final String limit,
+                         @Param("cursor") final String cursor,
+                         @NotNull final Request request,
                          @NotNull final HttpSession session) throws IOException {
-        if (start == null || start.isEmpty()) {
+        if ((start == null || start.isEmpty()) && cursor == null) {
             session.sendError(Response.BAD_REQUEST, "no start");
             return;
         }
-        final var firstBytes = ByteBuffer.wrap(start.getBytes(Charsets.UTF_8));
-        ByteBuffer lastBytes = null;
-        if (end != null && !end.isEmpty()) {
-            lastBytes = ByteBuffer.wrap(end.getBytes(Charsets.UTF_8));
+        final String last = end == null || end.isEmpty() ? null : end;
+        if (request.getHeader(PROXY_HEADER) != null) {
+            rangePage(start, last, limit, session);
+            return;
+        }
+        if (shed(request, session)) {
+            return;
+        }
+        if (limit != null || cursor != null) {
+            clientRangePage(start, last, limit, cursor, (StreamSession) session);
+            return;
+        }
+        if (clusterSize > 1) {
+            clusterRange(start, last, (StreamSession) session);
+            return;
         }
-        final var latestBytes = lastBytes;
+        final var firstBytes = ByteBuffer.wrap(start.getBytes(Charsets.UTF_8));
+        final var latestBytes = last == null ? null : ByteBuffer.wrap(last.getBytes(Charsets.UTF_8));
         final var streamSession = (StreamSession) session;
         asyncExecute(() -> {
             try {
@@ -233,6 +344,222 @@ public class ServiceImpl extends HttpServer implements Service {
         });
     }
 
+    private void rangePage(@NotNull final String start,
+                           final String end,
+                           final String limit,
+                           @NotNull final HttpSession session) throws IOException {
+        final int pageSize;
+        try {
+            pageSize = Integer.parseInt(limit);
+        } catch (NumberFormatException e) {
+            session.sendError(Response.BAD_REQUEST, "wrong limit");
+            return;
+        }
+        coordinator.rangeProxy(start, end, pageSize).whenComplete((response, error) ->
+                sendResult(session, error, () -> session.sendResponse(response)));
+    }
+
+    private void clientRangePage(final String start,
+                                 final String end,
+                                 final String limit,
+                                 final String cursor,
+                                 @NotNull final StreamSession session) throws IOException {
+        final int pageSize;
+        final RangeCursor position;
+        try {
+            pageSize = limit == null ? RequestCoordinators.RANGE_PAGE_SIZE : Integer.parseInt(limit);
+            position = cursor == null ? null : RangeCursor.parse(cursor);
+        } catch (IllegalArgumentException e) {
+            session.sendError(Response.BAD_REQUEST, "wrong limit or cursor");
+            return;
+        }
+        if (pageSize < 1 || pageSize > RequestCoordinators.MAX_RANGE_LIMIT) {
+            session.sendError(Response.BAD_REQUEST, "wrong limit");
+            return;
+        }
+        coordinator.rangePage(start == null ? "" : start, end, pageSize, position).whenComplete((page, error) ->
+                sendResult(session, error, () -> {
+                    final RangeCursor next = page.getNext();
+                    if (next == null) {
+                        session.streamStart(page.getRecords().iterator());
+                    } else {
+                        session.streamStart(page.getRecords().iterator(), RangeCursor.HEADER + next.encode());
+                    }
+                }));
+    }
+
+    private void clusterRange(@NotNull final String start,
+                              final String end,
+                              @NotNull final StreamSession session) {
+        coordinator.rangeCoordinate(start, end).whenComplete((range, error) -> {
+            try {
+                if (error == null) {
+                    session.streamStart(range);
+                } else if (ReplicaFutures.isOverload(error)) {
+                    session.sendResponse(overloaded());
+                } else {
+                    session.sendError(Response.GATEWAY_TIMEOUT, "not enough replicas");
+                }
+            } catch (IOException e) {
+                logger.error("error while starting range", e);
+            }
+        });
+    }
+
+    /**
+     * Read many entities at once, ids are sent in POST body separated by new lines.
+     * Found entities are streamed back in order of ids like in {@code /v0/entities},
+     * missing and deleted ones are skipped.
+     *
+     * @param replicas replication factor of every id
+     * @param request request
+     * @param session session
+     */
+    @Path(RequestCoordinators.BATCH_GET_URL)
+    public void batchGet(@Param("replicas") final String replicas,
+                         @NotNull final Request request,
+                         @NotNull final HttpSession session) throws IOException {
+        if (request.getMethod() != Request.METHOD_POST) {
+            session.sendError(Response.METHOD_NOT_ALLOWED, "Wrong method");
+            return;
+        }
+        final byte[] body = request.getBody();
+        final List<String> ids = BatchFrames.ids(body == null ? Response.EMPTY : body);
+        if (request.getHeader(PROXY_HEADER) != null) {
+            coordinator.batchGetProxy(ids).whenComplete((response, error) ->
+                    sendResult(session, error, () -> session.sendResponse(response)));
+            return;
+        }
+        if (shed(request, session)) {
+            return;
+        }
+        final Replicas rf = Replicas.calculateRF(replicas, clusterSize, session, defaultRF);
+        if (rf == null) {
+            return;
+        }
+        final CompletableFuture<List<Record>> records;
+        if (clusterSize > 1) {
+            records = coordinator.batchGetCoordinate(ids, rf.getAck(), rf.getFrom());
+        } else {
+            records = ReplicaFutures.async(() -> localGetAll(ids), exec);
+        }
+        records.whenComplete((result, error) ->
+                sendResult(session, error, () -> ((StreamSession) session).streamStart(result.iterator())));
+    }
+
+    /**
+     * Write many entities at once. POST body is a sequence of mutations:
+     * operation byte (1 upsert, 0 remove), 4-byte key length, key, and for upsert
+     * 4-byte value length and value. Response has one status per line in order of mutations:
+     * 201 or 202 if mutation is acknowledged by enough replicas, 504 otherwise.
+     *
+     * @param replicas replication factor of every key
+     * @param request request
+     * @param session session
+     */
+    @Path(RequestCoordinators.BATCH_WRITE_URL)
+    public void batchWrite(@Param("replicas") final String replicas,
+                           @NotNull final Request request,
+                           @NotNull final HttpSession session) throws IOException {
+        if (request.getMethod() != Request.METHOD_POST) {
+            session.sendError(Response.METHOD_NOT_ALLOWED, "Wrong method");
+            return;
+        }
+        final byte[] body = request.getBody();
+        final List<Mutation> mutations;
+        try {
+            mutations = BatchFrames.decodeMutations(body == null ? Response.EMPTY : body);
+        } catch (IOException e) {
+            session.sendError(Response.BAD_REQUEST, e.getMessage());
+            return;
+        }
+        if (request.getHeader(PROXY_HEADER) != null) {
+            final CompletableFuture<Response> response;
+            try {
+                response = coordinator.batchWriteProxy(mutations, request);
+            } catch (NumberFormatException e) {
+                session.sendError(Response.BAD_REQUEST, "wrong timestamp");
+                return;
+            }
+            response.whenComplete((result, error) -> sendResult(session, error, () -> session.sendResponse(result)));
+            return;
+        }
+        if (shed(request, session)) {
+            return;
+        }
+        final Replicas rf = Replicas.calculateRF(replicas, clusterSize, session, defaultRF);
+        if (rf == null) {
+            return;
+        }
+        final CompletableFuture<Response> response;
+        if (clusterSize > 1) {
+            response = coordinator.batchWriteCoordinate(mutations, rf.getAck(), rf.getFrom());
+        } else {
+            response = ReplicaFutures.async(() -> localApplyAll(mutations), exec);
+        }
+        response.whenComplete((result, error) -> sendResult(session, error, () -> session.sendResponse(result)));
+    }
+
+    private Response localApplyAll(final List<Mutation> mutations) throws IOException {
+        dao.applyAll(mutations);
+        final StringBuilder statuses = new StringBuilder();
+        for (final Mutation mutation : mutations) {
+            statuses.append(mutation.isRemove() ? 202 : 201).append('\n');
+        }
+        return new Response(Response.OK, statuses.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<Record> localGetAll(final List<String> ids) throws IOException {
+        final List<ByteBuffer> keys = new ArrayList<>(ids.size());
+        for (final String id : ids) {
+            keys.add(ByteBuffer.wrap(id.getBytes(StandardCharsets.UTF_8)));
+        }
+        final List<Record> records = new ArrayList<>(keys.size());
+        dao.getAll(keys).forEach((key, value) -> records.add(Record.of(key, value)));
+        return records;
+    }
+
+    /**
+     * Send result of async request, 503 if it was rejected by overloaded workers, 504 on other failures.
+     */
+    private void sendResult(@NotNull final HttpSession session,
+                           final Throwable error,
+                           @NotNull final Send send) {
+        try {
+            if (error == null) {
+                send.send();
+            } else if (ReplicaFutures.isOverload(error)) {
+                session.sendResponse(overloaded());
+            } else {
+                session.sendError(Response.GATEWAY_TIMEOUT, error.getMessage());
+            }
+        } catch (IOException e) {
+            logger.error("error while sending batch", e);
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        super.start();
+        if (replicationServer != null) {
+            replicationServer.start();
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        super.stop();
+        try {
+            if (replicationServer != null) {
+                replicationServer.close();
+            }
+            coordinator.close();
+        } catch (IOException e) {
+            logger.error("error while closing replication", e);
+        }
+        pools.shutdown();
+    }
+
     @Override
     public HttpSession createSession(final Socket socket){
         return new StreamSession(this, socket);
@@ -243,4 +570,9 @@ public class ServiceImpl extends HttpServer implements Service {
         Response response() throws IOException;
     }
 
+    @FunctionalInterface
+    interface Send {
+        void send() throws IOException;
+    }
+
 }
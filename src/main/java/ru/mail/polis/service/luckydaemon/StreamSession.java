@@ -8,53 +8,128 @@ import one.nio.net.Socket;
 import one.nio.http.Response;
 
 import ru.mail.polis.Record;
-import ru.mail.polis.dao.ByteBufferUtils;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class StreamSession extends HttpSession {
-    private static final byte[] CRLF = "\r\n".getBytes(Charsets.UTF_8);
-    private static final byte[] DELIMITER = "\n".getBytes(Charsets.UTF_8);
     private static final byte[] EMPTY = "0\r\n\r\n".getBytes(Charsets.UTF_8);
+    /**
+     * Batch writes carry many records in one body, one-nio allows only 64 KB by default.
+     */
+    private static final int MAX_REQUEST_BODY_LENGTH = 64 * 1024 * 1024;
+    private final ChunkEncoder chunks;
     private Iterator<Record> iter;
 
     StreamSession(final HttpServer httpserver, final Socket socket){
+        this(httpserver, socket, ChunkEncoder.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Session streaming records in buffers of given size.
+     *
+     * @param httpserver server
+     * @param socket socket
+     * @param chunkBufferSize bytes of records sent by one socket write, bigger records are sent alone
+     */
+    StreamSession(final HttpServer httpserver, final Socket socket, final int chunkBufferSize) {
         super(socket, httpserver);
+        this.chunks = new ChunkEncoder(chunkBufferSize);
     }
 
     /**
      * prepare to stream.
      *
      * @param iter data iterator
+     * @param headers extra headers of the response
      * @throws IOException if something wrong
      */
-    public void streamStart(final Iterator<Record> iter) throws IOException{
+    public synchronized void streamStart(final Iterator<Record> iter, final String... headers) throws IOException{
         this.iter = iter;
         if (handling == null) {
+            releaseIterator();
             throw new IOException("no handling");
         }
         final Response response = new Response(Response.OK);
         response.addHeader("Transfer-Encoding: chunked");
+        for (final String header : headers) {
+            response.addHeader(header);
+        }
         writeResponse(response,false);
         nextPart();
     }
 
-    private void nextPart() throws IOException {
-        while (iter.hasNext() && queueHead == null) {
-            final Record record = iter.next();
-            final byte[] chunk = formAChunk(record);
+    private synchronized void nextPart() throws IOException {
+        try {
+            while (iter != null && queueHead == null) {
+                if (waitForData()) {
+                    flushChunks();
+                    return;
+                }
+                if (!iter.hasNext()) {
+                    flushChunks();
+                    closeStream();
+                    return;
+                }
+                appendChunk(iter.next());
+            }
+        } catch (CompletionException exception) {
+            // part of the stream from other node is lost, client must not get a complete response
+            log.error("stream failed", exception);
+            close();
+        }
+    }
+
+    private void appendChunk(final Record record) throws IOException {
+        if (chunks.append(record)) {
+            return;
+        }
+        flushChunks();
+        if (!chunks.append(record)) {
+            final byte[] chunk = ChunkEncoder.encode(record);
             write(chunk, 0, chunk.length);
         }
-        if (!iter.hasNext()) {
-            closeStream();
+    }
+
+    private void flushChunks() throws IOException {
+        if (!chunks.isEmpty()) {
+            write(chunks.array(), 0, chunks.length());
+            chunks.written(queueHead != null);
+        }
+    }
+
+    /**
+     * Continue the stream when data of async iterator arrives instead of blocking on it.
+     *
+     * @return true if the stream waits for data
+     */
+    private boolean waitForData() {
+        if (!(iter instanceof AsyncIterator)) {
+            return false;
+        }
+        final CompletableFuture<?> ready = ((AsyncIterator<?>) iter).whenReady();
+        if (ready == null) {
+            return false;
+        }
+        ready.whenComplete((result, error) -> resume());
+        return true;
+    }
+
+    private void resume() {
+        try {
+            nextPart();
+        } catch (IOException exception) {
+            log.debug("stream closed", exception);
+            close();
         }
     }
 
     private void closeStream() throws IOException {
         write(EMPTY, 0, EMPTY.length);
+        releaseIterator();
         server.incRequestsProcessed();
         if (!keepAlive()) {
             scheduleClose();
@@ -66,14 +141,22 @@ public class StreamSession extends HttpSession {
                 server.handleRequest(handling, this);
             }
         }
-        if (iter instanceof Closeable) {
+    }
+
+    /**
+     * Close iterator, so snapshot of the scan is released, and return chunk buffer to the pool.
+     */
+    private void releaseIterator() throws IOException {
+        chunks.release(queueHead != null);
+        final Iterator<Record> current = iter;
+        iter = null;
+        if (current instanceof Closeable) {
             try {
-                ((Closeable) iter).close();
+                ((Closeable) current).close();
             } catch (IOException exception) {
                 throw new IOException("closing error", exception);
             }
         }
-        iter = null;
     }
 
     private boolean keepAlive() {
@@ -83,21 +166,29 @@ public class StreamSession extends HttpSession {
                 : "Keep-Alive".equalsIgnoreCase(connection);
     }
 
-    private byte[] formAChunk(final Record record){
-        final byte[] key = ByteBufferUtils.fromByteToArray(record.getKey());
-        final byte[] value = ByteBufferUtils.fromByteToArray(record.getValue());
-        final int payloadLength = key.length + value.length + DELIMITER.length;
-        final String payloadHex = Integer.toHexString(payloadLength);
-        final int chunksLength = payloadLength + payloadHex.length() + CRLF.length * 2;
-        final byte[] chunk = new byte[chunksLength];
-        final ByteBuffer buffer = ByteBuffer.wrap(chunk);
-        buffer.put(payloadHex.getBytes(Charsets.UTF_8));
-        buffer.put(CRLF);
-        buffer.put(key);
-        buffer.put(DELIMITER);
-        buffer.put(value);
-        buffer.put(CRLF);
-        return chunk;
+    @Override
+    protected int getMaxRequestBodyLength() {
+        return MAX_REQUEST_BODY_LENGTH;
+    }
+
+    @Override
+    protected synchronized void handleSocketClosed() {
+        if (iter == null) {
+            super.handleSocketClosed();
+            return;
+        }
+        // client is gone, nobody reads the rest of the stream
+        close();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            releaseIterator();
+        } catch (IOException exception) {
+            log.warn("can't release stream iterator", exception);
+        }
+        super.close();
     }
 
     @Override
@@ -0,0 +1,34 @@
+package ru.mail.polis.service.luckydaemon;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads of JDK 21+, looked up by reflection, so the service still builds and runs on JDK 11.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Factory of virtual threads named prefix + counter.
+     *
+     * @param prefix name prefix
+     * @return factory or null if JDK has no virtual threads
+     */
+    @Nullable
+    static ThreadFactory factory(@NotNull final String prefix) {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Class<?> ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            final Object named = ofVirtual.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) ofVirtual.getMethod("factory").invoke(named);
+        } catch (ReflectiveOperationException e) {
+            // older JDK, or JDK 19-20 without --enable-preview
+            return null;
+        }
+    }
+}
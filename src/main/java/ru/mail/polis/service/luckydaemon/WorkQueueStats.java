@@ -0,0 +1,63 @@
+package ru.mail.polis.service.luckydaemon;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Depth of a work queue and amount of requests shed by it.
+ */
+public final class WorkQueueStats {
+    private final BlockingQueue<?> queue;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    WorkQueueStats(@NotNull final BlockingQueue<?> queue) {
+        this.queue = queue;
+    }
+
+    void submitted() {
+        submitted.increment();
+    }
+
+    void rejected() {
+        rejected.increment();
+    }
+
+    void expired() {
+        expired.increment();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Tasks offered to the queue, including rejected ones.
+     *
+     * @return submitted tasks
+     */
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    /**
+     * Tasks not queued because the queue was full.
+     *
+     * @return rejected tasks
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Tasks dropped because they waited in the queue too long.
+     *
+     * @return expired tasks
+     */
+    public long getExpired() {
+        return expired.sum();
+    }
+}
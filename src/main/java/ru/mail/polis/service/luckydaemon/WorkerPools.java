@@ -0,0 +1,84 @@
+package ru.mail.polis.service.luckydaemon;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jetbrains.annotations.NotNull;
+
+import ru.mail.polis.service.ServiceConfig;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Executors of a node, isolated by class of traffic: local work of client requests,
+ * local work of replica requests sent by other coordinators, and background read repair.
+ * A burst of client requests fills only the client queue, so replica requests of other
+ * coordinators still find free workers and don't time out.
+ */
+final class WorkerPools {
+    private static final Log logger = LogFactory.getLog(WorkerPools.class);
+
+    private final BoundedExecutor client;
+    private final BoundedExecutor replica;
+    private final BoundedExecutor repair;
+
+    WorkerPools(@NotNull final ServiceConfig config) {
+        if (config.virtualThreads && VirtualThreads.factory("probe-") != null) {
+            this.client = virtual("exec-", config.workQueueCapacity, config.maxQueueTimeMillis, config);
+            this.replica = virtual("replica-", config.replicaQueueCapacity, config.replicaMaxQueueTimeMillis, config);
+            this.repair = repair(config);
+            return;
+        }
+        if (config.virtualThreads) {
+            logger.warn("virtual threads are not supported by JDK " + Runtime.version() + ", using platform threads");
+        }
+        this.client = new BoundedExecutor("exec-%d",
+                config.clientThreads,
+                config.workQueueCapacity,
+                config.maxQueueTimeMillis);
+        this.replica = new BoundedExecutor("replica-%d",
+                config.replicaThreads,
+                config.replicaQueueCapacity,
+                config.replicaMaxQueueTimeMillis);
+        this.repair = repair(config);
+    }
+
+    /**
+     * Read repair is best effort, repairs beyond the queue are dropped and never expire in it.
+     */
+    private static BoundedExecutor repair(@NotNull final ServiceConfig config) {
+        return new BoundedExecutor("repair-%d", config.repairThreads, config.repairQueueCapacity, Long.MAX_VALUE);
+    }
+
+    private static BoundedExecutor virtual(@NotNull final String prefix,
+                                           final int capacity,
+                                           final long maxQueueTimeMillis,
+                                           @NotNull final ServiceConfig config) {
+        final ThreadFactory factory = VirtualThreads.factory(prefix);
+        assert factory != null;
+        final BoundedExecutor executor = new BoundedExecutor(factory,
+                config.virtualThreadsPerPool,
+                capacity,
+                maxQueueTimeMillis);
+        // idle virtual threads are cheap, but there is no reason to keep thousands of them
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    BoundedExecutor client() {
+        return client;
+    }
+
+    BoundedExecutor replica() {
+        return replica;
+    }
+
+    BoundedExecutor repair() {
+        return repair;
+    }
+
+    void shutdown() {
+        client.shutdown();
+        replica.shutdown();
+        repair.shutdown();
+    }
+}
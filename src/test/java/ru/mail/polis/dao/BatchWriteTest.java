@@ -0,0 +1,57 @@
+package ru.mail.polis.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.mail.polis.TestBase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link DAO#applyAll} written as one RocksDB WriteBatch.
+ */
+class BatchWriteTest extends TestBase {
+    @Test
+    void lastMutationWins(@TempDir File data) throws IOException {
+        final ByteBuffer kept = randomKeyBuffer();
+        final ByteBuffer removed = randomKeyBuffer();
+        final ByteBuffer value = randomValueBuffer();
+        final List<Mutation> mutations = new ArrayList<>();
+        mutations.add(Mutation.upsert(kept, randomValueBuffer()));
+        mutations.add(Mutation.upsert(removed, value));
+        mutations.add(Mutation.remove(kept));
+        mutations.add(Mutation.upsert(kept, value));
+        mutations.add(Mutation.remove(removed));
+        try (DAO dao = DAOFactory.create(data)) {
+            dao.applyAll(mutations);
+            assertEquals(value, dao.get(kept));
+            assertThrows(NoSuchElementException.class, () -> dao.get(removed));
+        }
+    }
+
+    @Test
+    void withTimestamp(@TempDir File data) throws IOException {
+        final ByteBuffer upserted = randomKeyBuffer();
+        final ByteBuffer removed = randomKeyBuffer();
+        final ByteBuffer value = randomValueBuffer();
+        final DAOConfig config = new DAOConfig();
+        config.tombstoneGracePeriodMillis = 1000;
+        config.tombstoneSweepIntervalMillis = 0;
+        try (DAOImpl dao = (DAOImpl) DAOFactory.create(data, config)) {
+            dao.applyAllWithTimestamp(List.of(Mutation.upsert(upserted, value), Mutation.remove(removed)), 42);
+            final RecordTimestamp record = dao.getWithTimestamp(upserted);
+            assertEquals(value, record.getValue());
+            assertEquals(42, record.getTimestamp());
+            assertTrue(dao.getWithTimestamp(removed).isDeleted());
+            assertEquals(42, dao.getWithTimestamp(removed).getTimestamp());
+        }
+    }
+}
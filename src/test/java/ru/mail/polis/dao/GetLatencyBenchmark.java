@@ -0,0 +1,123 @@
+package ru.mail.polis.dao;
+
+import org.rocksdb.CompressionType;
+import ru.mail.polis.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * GET latency of {@link DAOImpl} for existing and missing keys under different table settings.
+ * Run with {@code gradle daoBenchmark}.
+ */
+public final class GetLatencyBenchmark {
+    private static final int RECORDS = 200_000;
+    private static final int VALUE_LENGTH = 256;
+    private static final int GETS = 100_000;
+    private static final int WARMUP_GETS = 20_000;
+
+    private GetLatencyBenchmark() {
+        // Not instantiable
+    }
+
+    private static DAOConfig plain() {
+        final DAOConfig config = new DAOConfig();
+        config.blockCacheSizeBytes = 0;
+        config.bloomFilterBitsPerKey = 0;
+        config.cacheIndexAndFilterBlocks = false;
+        config.compressionPerLevel = List.of(CompressionType.NO_COMPRESSION);
+        return config;
+    }
+
+    private static Map<String, DAOConfig> settings() {
+        final Map<String, DAOConfig> settings = new LinkedHashMap<>();
+        settings.put("no cache, no filter", plain());
+
+        final DAOConfig bloom = plain();
+        bloom.bloomFilterBitsPerKey = 10;
+        settings.put("bloom filter", bloom);
+
+        final DAOConfig lru = plain();
+        lru.blockCacheSizeBytes = 64L * 1024 * 1024;
+        settings.put("64 MB LRU cache", lru);
+
+        final DAOConfig clock = plain();
+        clock.blockCacheSizeBytes = 64L * 1024 * 1024;
+        clock.blockCacheType = DAOConfig.BlockCacheType.CLOCK;
+        settings.put("64 MB Clock cache", clock);
+
+        settings.put("defaults (LRU + bloom + LZ4)", new DAOConfig());
+        return settings;
+    }
+
+    private static ByteBuffer key(final int i) {
+        return ByteBuffer.wrap(String.format("key%010d", i).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Even keys are stored, odd keys are missing but fall between stored ones.
+     */
+    private static long[] measure(final DAO dao, final Random random, final int parity) throws IOException {
+        final long[] latencies = new long[GETS];
+        for (int i = -WARMUP_GETS; i < GETS; i++) {
+            final ByteBuffer key = key(2 * random.nextInt(RECORDS) + parity);
+            final long start = System.nanoTime();
+            try {
+                dao.get(key);
+            } catch (NoSuchElementException e) {
+                // expected for misses
+            }
+            if (i >= 0) {
+                latencies[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static String report(final long[] sorted) {
+        final long sum = Arrays.stream(sorted).sum();
+        return String.format("avg %6.1f us, p50 %6.1f us, p99 %7.1f us",
+                sum / (double) sorted.length / 1000,
+                sorted[sorted.length / 2] / 1000.0,
+                sorted[sorted.length * 99 / 100] / 1000.0);
+    }
+
+    private static void run(final String name, final DAOConfig config) throws IOException {
+        final File data = Files.createTempDirectory();
+        try (DAO dao = DAOFactory.create(data, config)) {
+            final Random random = new Random(42);
+            final byte[] value = new byte[VALUE_LENGTH];
+            for (int i = 0; i < RECORDS; i++) {
+                random.nextBytes(value);
+                dao.upsert(key(2 * i), ByteBuffer.wrap(value));
+            }
+            dao.compact();
+            System.out.printf("%-30s hit:  %s%n", name, report(measure(dao, random, 0)));
+            System.out.printf("%-30s miss: %s%n", name, report(measure(dao, random, 1)));
+        } finally {
+            Files.recursiveDelete(data);
+        }
+    }
+
+    /**
+     * Run benchmark for every setting.
+     *
+     * @param args ignored
+     */
+    public static void main(final String[] args) throws IOException {
+        System.out.printf("%d records of %d bytes, %d GETs per workload, Xmx %d MB%n",
+                RECORDS, VALUE_LENGTH, GETS, Runtime.getRuntime().maxMemory() / 1024 / 1024);
+        for (final Map.Entry<String, DAOConfig> setting : settings().entrySet()) {
+            run(setting.getKey(), setting.getValue());
+        }
+    }
+}
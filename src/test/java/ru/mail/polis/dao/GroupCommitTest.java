@@ -0,0 +1,137 @@
+package ru.mail.polis.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import ru.mail.polis.TestBase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Group commit write path of {@link DAOImpl}.
+ */
+class GroupCommitTest extends TestBase {
+    private static final int THREADS = 8;
+    private static final int WRITES_PER_THREAD = 250;
+
+    @Test
+    void concurrentWrites(@TempDir File data) throws Exception {
+        final DAOConfig config = new DAOConfig();
+        config.groupCommit = true;
+        final List<ByteBuffer> keys = new ArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try (DAOImpl dao = (DAOImpl) DAOFactory.create(data, config)) {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final List<ByteBuffer> threadKeys = new ArrayList<>();
+                for (int i = 0; i < WRITES_PER_THREAD; i++) {
+                    threadKeys.add(randomKeyBuffer());
+                }
+                keys.addAll(threadKeys);
+                futures.add(executor.submit(() -> {
+                    for (final ByteBuffer key : threadKeys) {
+                        dao.upsert(key, key);
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+            dao.remove(keys.get(0));
+
+            for (final ByteBuffer key : keys.subList(1, keys.size())) {
+                assertEquals(key, dao.get(key));
+            }
+            assertThrows(NoSuchElementException.class, () -> dao.get(keys.get(0)));
+
+            final GroupCommitStats stats = dao.getGroupCommitStats();
+            assertNotNull(stats);
+            assertEquals(THREADS * WRITES_PER_THREAD + 1, stats.getWrites());
+            assertTrue(stats.getBatches() <= stats.getWrites());
+            assertTrue(stats.getMaxBatchSize() <= config.groupCommitMaxBatch);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void disabledByDefault(@TempDir File data) throws IOException {
+        try (DAOImpl dao = (DAOImpl) DAOFactory.create(data)) {
+            assertNull(dao.getGroupCommitStats());
+        }
+    }
+
+    @Test
+    void writesRacingCloseNeverHang(@TempDir File data) throws Exception {
+        RocksDB.loadLibrary();
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try (Options options = new Options().setCreateIfMissing(true);
+             RocksDB db = RocksDB.open(options, data.getAbsolutePath())) {
+            final GroupCommitter committer = new GroupCommitter(db, new DAOConfig());
+            final CountDownLatch started = new CountDownLatch(THREADS);
+            final List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    started.countDown();
+                    int written = 0;
+                    try {
+                        while (true) {
+                            committer.write(randomValue(), randomValue());
+                            written++;
+                        }
+                    } catch (IOException e) {
+                        return written;
+                    }
+                }));
+            }
+            started.await();
+            committer.close();
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                for (final Future<Integer> future : futures) {
+                    future.get();
+                }
+            });
+            assertThrows(IOException.class, () -> committer.write(randomValue(), randomValue()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedFlushDoesNotStopGroupCommit(@TempDir File data) throws Exception {
+        RocksDB.loadLibrary();
+        try (Options options = new Options().setCreateIfMissing(true);
+             RocksDB db = RocksDB.open(options, data.getAbsolutePath())) {
+            final GroupCommitter committer = new GroupCommitter(db, new DAOConfig());
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                // null key makes the batch throw NullPointerException
+                assertThrows(IOException.class, () -> committer.write(null, randomValue()));
+                final byte[] key = randomValue();
+                final byte[] value = randomValue();
+                committer.write(key, value);
+                assertArrayEquals(value, db.get(key));
+            });
+            committer.close();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ru.mail.polis.dao;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.mail.polis.TestBase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link DAO#getAll} backed by RocksDB multiGet.
+ */
+class MultiGetTest extends TestBase {
+    @Test
+    void foundInOrder(@TempDir File data) throws IOException {
+        final List<ByteBuffer> keys = new ArrayList<>();
+        final List<ByteBuffer> present = new ArrayList<>();
+        try (DAO dao = DAOFactory.create(data)) {
+            for (int i = 0; i < 100; i++) {
+                final ByteBuffer key = randomKeyBuffer();
+                keys.add(key);
+                if (i % 3 != 0) {
+                    dao.upsert(key, key);
+                    present.add(key);
+                }
+            }
+            dao.remove(keys.get(1));
+            present.remove(keys.get(1));
+
+            final Map<ByteBuffer, ByteBuffer> values = dao.getAll(keys);
+            assertEquals(present, new ArrayList<>(values.keySet()));
+            values.forEach(Assertions::assertEquals);
+            assertTrue(dao.getAll(List.of()).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ru.mail.polis.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.mail.polis.Record;
+import ru.mail.polis.TestBase;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Range scans of {@link DAOImpl} read a snapshot taken at their start.
+ */
+class ScanSnapshotTest extends TestBase {
+    private static final ByteBuffer FROM = ByteBuffer.wrap(new byte[]{0});
+    private static final ByteBuffer TO = ByteBuffer.wrap(new byte[]{Byte.MAX_VALUE});
+
+    @Test
+    void scanIgnoresLaterWrites(@TempDir File data) throws IOException {
+        final ByteBuffer first = join(1, randomKeyBuffer());
+        final ByteBuffer second = join(2, randomKeyBuffer());
+        final ByteBuffer value = randomValueBuffer();
+        try (DAO dao = DAOFactory.create(data)) {
+            dao.upsert(first, value);
+            dao.upsert(second, value);
+
+            final Iterator<Record> range = dao.range(FROM, TO);
+            dao.remove(second);
+            dao.upsert(first, randomValueBuffer());
+            dao.upsert(join(3, randomKeyBuffer()), value);
+
+            assertEquals(Record.of(first, value), range.next());
+            assertEquals(Record.of(second, value), range.next());
+            assertFalse(range.hasNext());
+            ((Closeable) range).close();
+        }
+    }
+
+    @Test
+    void closeTwice(@TempDir File data) throws IOException {
+        try (DAO dao = DAOFactory.create(data)) {
+            dao.upsert(join(1, randomKeyBuffer()), randomValueBuffer());
+            final Iterator<Record> iterator = dao.iterator(FROM);
+            assertTrue(iterator.hasNext());
+            ((Closeable) iterator).close();
+            ((Closeable) iterator).close();
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    @Test
+    void closeAfterDao(@TempDir File data) throws IOException {
+        final Iterator<Record> range;
+        final Iterator<Record> page;
+        try (DAO dao = DAOFactory.create(data)) {
+            dao.upsert(join(1, randomKeyBuffer()), randomValueBuffer());
+            range = dao.range(FROM, TO);
+            page = dao.iterator(FROM);
+            assertTrue(range.hasNext());
+        }
+        ((Closeable) range).close();
+        ((Closeable) page).close();
+        assertFalse(range.hasNext());
+    }
+
+    private static ByteBuffer join(final int prefix, final ByteBuffer key) {
+        final ByteBuffer result = ByteBuffer.allocate(1 + key.remaining());
+        result.put((byte) prefix).put(key.duplicate()).flip();
+        return result;
+    }
+}
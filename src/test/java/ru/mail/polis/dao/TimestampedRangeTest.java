@@ -0,0 +1,88 @@
+package ru.mail.polis.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.mail.polis.Record;
+import ru.mail.polis.TestBase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Range of {@link DAOImpl} over records written with timestamp.
+ */
+class TimestampedRangeTest extends TestBase {
+    private static ByteBuffer key(final int i) {
+        return ByteBuffer.wrap(new byte[]{(byte) i});
+    }
+
+    @Test
+    void skipTombstonesAndStripHeader(@TempDir File data) throws IOException {
+        final ByteBuffer value = randomValueBuffer();
+        final ByteBuffer empty = ByteBuffer.allocate(0);
+        try (DAOImpl dao = (DAOImpl) DAOFactory.create(data)) {
+            dao.removeWithTimestamp(key(1), 10);
+            dao.upsertWithTimestamp(key(2), value, 20);
+            dao.removeWithTimestamp(key(3), 30);
+            dao.removeWithTimestamp(key(4), 40);
+            dao.upsertWithTimestamp(key(5), empty, 50);
+            dao.removeWithTimestamp(key(6), 60);
+
+            try (RocksDBIterator range = dao.rangeWithTimestamp(key(0), key(6), false)) {
+                assertThrows(IllegalStateException.class, range::getTimestamp);
+                assertTrue(range.hasNext());
+                assertEquals(Record.of(key(2), value), range.next());
+                assertEquals(20, range.getTimestamp());
+                assertEquals(Record.of(key(5), empty), range.next());
+                assertEquals(50, range.getTimestamp());
+                assertFalse(range.hasNext());
+            }
+        }
+    }
+
+    @Test
+    void unboundedAndEmpty(@TempDir File data) throws IOException {
+        final ByteBuffer value = randomValueBuffer();
+        try (DAOImpl dao = (DAOImpl) DAOFactory.create(data)) {
+            dao.upsertWithTimestamp(key(1), value, 1);
+            dao.removeWithTimestamp(key(2), 2);
+
+            try (RocksDBIterator range = dao.rangeWithTimestamp(key(0), null, false)) {
+                assertEquals(Record.of(key(1), value), range.next());
+                assertFalse(range.hasNext());
+            }
+            try (RocksDBIterator range = dao.rangeWithTimestamp(key(1), key(1), false)) {
+                assertFalse(range.hasNext());
+            }
+        }
+    }
+
+    @Test
+    void withTombstones(@TempDir File data) throws IOException {
+        final ByteBuffer value = randomValueBuffer();
+        final ByteBuffer empty = ByteBuffer.allocate(0);
+        try (DAOImpl dao = (DAOImpl) DAOFactory.create(data)) {
+            dao.removeWithTimestamp(key(1), 10);
+            dao.upsertWithTimestamp(key(2), value, 20);
+            dao.upsertWithTimestamp(key(3), empty, 30);
+
+            try (RocksDBIterator range = dao.rangeWithTimestamp(key(0), null, true)) {
+                assertEquals(Record.of(key(1), empty), range.next());
+                assertTrue(range.isTombstone());
+                assertEquals(10, range.getTimestamp());
+                assertEquals(Record.of(key(2), value), range.next());
+                assertFalse(range.isTombstone());
+                assertEquals(20, range.getTimestamp());
+                assertEquals(Record.of(key(3), empty), range.next());
+                assertFalse(range.isTombstone());
+                assertFalse(range.hasNext());
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.mail.polis.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.mail.polis.TestBase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tombstone garbage collection of {@link DAOImpl}.
+ */
+class TombstoneGcTest extends TestBase {
+    private static final long GRACE = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    void dropExpiredTombstones(@TempDir File data) throws IOException {
+        final DAOConfig config = new DAOConfig();
+        config.tombstoneGracePeriodMillis = GRACE;
+        config.tombstoneSweepIntervalMillis = 0;
+        final long now = System.currentTimeMillis();
+        final ByteBuffer expired = randomKeyBuffer();
+        final ByteBuffer fresh = randomKeyBuffer();
+        final ByteBuffer value = randomKeyBuffer();
+        final ByteBuffer rewritten = randomKeyBuffer();
+        try (DAOImpl dao = (DAOImpl) DAOFactory.create(data, config)) {
+            dao.removeWithTimestamp(expired, now - 2 * GRACE);
+            dao.removeWithTimestamp(fresh, now);
+            dao.upsertWithTimestamp(value, value, now - 2 * GRACE);
+            dao.removeWithTimestamp(rewritten, now - 2 * GRACE);
+            dao.upsertWithTimestamp(rewritten, rewritten, now);
+
+            dao.compact();
+
+            assertTrue(dao.getWithTimestamp(expired).isMissing());
+            assertTrue(dao.getWithTimestamp(fresh).isDeleted());
+            assertEquals(value, dao.getWithTimestamp(value).getValue());
+            assertEquals(rewritten, dao.getWithTimestamp(rewritten).getValue());
+            assertEquals(1, dao.getTombstonesDropped());
+        }
+    }
+
+    @Test
+    void keepTombstonesByDefault(@TempDir File data) throws IOException {
+        final ByteBuffer key = randomKeyBuffer();
+        try (DAOImpl dao = (DAOImpl) DAOFactory.create(data)) {
+            dao.removeWithTimestamp(key, 0);
+            dao.compact();
+            assertTrue(dao.getWithTimestamp(key).isDeleted());
+            assertEquals(0, dao.getTombstonesDropped());
+        }
+    }
+}
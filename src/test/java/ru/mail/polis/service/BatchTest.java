@@ -0,0 +1,182 @@
+package ru.mail.polis.service;
+
+import one.nio.http.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.mail.polis.Files;
+import ru.mail.polis.dao.DAO;
+import ru.mail.polis.dao.DAOFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Batch API of a three node {@link Service} cluster.
+ */
+class BatchTest extends ClusterTestBase {
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+    private static final int NODES = 3;
+    private final File[] data = new File[NODES];
+    private final DAO[] dao = new DAO[NODES];
+    private final Service[] storage = new Service[NODES];
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        final int[] ports = new int[NODES];
+        endpoints = new LinkedHashSet<>();
+        for (int i = 0; i < NODES; i++) {
+            ports[i] = randomPort();
+            endpoints.add(endpoint(ports[i]));
+        }
+        for (int i = 0; i < NODES; i++) {
+            data[i] = Files.createTempDirectory();
+            dao[i] = DAOFactory.create(data[i]);
+            storage[i] = ServiceFactory.create(ports[i], dao[i], endpoints);
+            start(i, storage[i]);
+        }
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        for (int i = 0; i < NODES; i++) {
+            stop(i, storage[i]);
+            dao[i].close();
+            Files.recursiveDelete(data[i]);
+        }
+        endpoints = Collections.emptySet();
+    }
+
+    private static byte[] chunkOf(final String key, final byte[] value) {
+        final ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        chunk.writeBytes((key + '\n').getBytes(StandardCharsets.UTF_8));
+        chunk.writeBytes(value);
+        return chunk.toByteArray();
+    }
+
+    @Test
+    void getFoundInOrder() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            final StringBuilder ids = new StringBuilder();
+            for (int i = 0; i < 20; i++) {
+                final String key = randomId();
+                final byte[] value = randomValue();
+                assertEquals(201, upsert(i % NODES, key, value, 2, 3).getStatus());
+                if (i % 5 == 0) {
+                    assertEquals(202, delete(i % NODES, key, 2, 3).getStatus());
+                } else {
+                    expected.writeBytes(chunkOf(key, value));
+                }
+                ids.append(key).append('\n').append(randomId()).append('\n');
+            }
+
+            final Response response = batchGet(1, ids.toString(), 2, 3);
+            assertEquals(200, response.getStatus());
+            assertArrayEquals(expected.toByteArray(), response.getBody());
+        });
+    }
+
+    @Test
+    void getEmpty() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final Response response = batchGet(0, "", 2, 3);
+            assertEquals(200, response.getStatus());
+            assertEquals(0, response.getBody().length);
+        });
+    }
+
+    @Test
+    void getUnreachable() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            stop(0, storage[0]);
+            stop(1, storage[1]);
+            assertEquals(504, batchGet(2, randomId() + '\n' + randomId(), 2, 3).getStatus());
+        });
+    }
+
+    private static void upsertOf(final ByteArrayOutputStream body, final String key, final byte[] value) {
+        body.write(1);
+        frameOf(body, key.getBytes(StandardCharsets.UTF_8));
+        frameOf(body, value);
+    }
+
+    private static void removeOf(final ByteArrayOutputStream body, final String key) {
+        body.write(0);
+        frameOf(body, key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void frameOf(final ByteArrayOutputStream body, final byte[] bytes) {
+        body.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+        body.writeBytes(bytes);
+    }
+
+    @Test
+    void writeThenRead() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final String removed = randomId();
+            assertEquals(201, upsert(0, removed, randomValue(), 3, 3).getStatus());
+
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            final StringBuilder expectedStatuses = new StringBuilder();
+            final String[] keys = new String[100];
+            final byte[][] values = new byte[keys.length][];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = randomId();
+                values[i] = randomValue();
+                upsertOf(body, keys[i], values[i]);
+                expectedStatuses.append("201\n");
+            }
+            removeOf(body, removed);
+            expectedStatuses.append("202\n");
+
+            final Response response = batchWrite(2, body.toByteArray(), 2, 3);
+            assertEquals(200, response.getStatus());
+            assertEquals(expectedStatuses.toString(), response.getBodyUtf8());
+
+            for (int i = 0; i < keys.length; i++) {
+                final Response get = get(i % NODES, keys[i], 2, 3);
+                assertEquals(200, get.getStatus());
+                assertArrayEquals(values[i], get.getBody());
+            }
+            assertEquals(404, get(1, removed, 2, 3).getStatus());
+        });
+    }
+
+    @Test
+    void writeUnreachable() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            stop(0, storage[0]);
+            stop(1, storage[1]);
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            upsertOf(body, randomId(), randomValue());
+            removeOf(body, randomId());
+
+            final Response response = batchWrite(2, body.toByteArray(), 2, 3);
+            assertEquals(200, response.getStatus());
+            assertEquals("504\n504\n", response.getBodyUtf8());
+        });
+    }
+
+    @Test
+    void writeBroken() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            upsertOf(body, randomId(), randomValue());
+            final byte[] truncated = Arrays.copyOf(body.toByteArray(), body.size() - 1);
+            assertEquals(400, batchWrite(0, truncated, 2, 3).getStatus());
+            assertEquals(400, batchWrite(0, new byte[]{7, 0, 0, 0, 1, 42}, 2, 3).getStatus());
+        });
+    }
+}
@@ -0,0 +1,131 @@
+package ru.mail.polis.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.mail.polis.Files;
+import ru.mail.polis.dao.DAO;
+import ru.mail.polis.dao.DAOFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Three node {@link Service} cluster with replicas called over the binary replication protocol.
+ */
+class BinaryReplicationTest extends ClusterTestBase {
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+    private static final int NODES = 3;
+    private static final int OFFSET = 1;
+    private final File[] data = new File[NODES];
+    private final DAO[] dao = new DAO[NODES];
+    private final Service[] storage = new Service[NODES];
+    private final boolean[] stopped = new boolean[NODES];
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        final int[] ports = randomPorts(NODES, OFFSET);
+        endpoints = new LinkedHashSet<>();
+        for (final int port : ports) {
+            endpoints.add(endpoint(port));
+        }
+        final ServiceConfig config = new ServiceConfig();
+        config.replicationPortOffset = OFFSET;
+        for (int i = 0; i < NODES; i++) {
+            data[i] = Files.createTempDirectory();
+            dao[i] = DAOFactory.create(data[i]);
+            storage[i] = ServiceFactory.create(ports[i], dao[i], endpoints, config);
+            start(i, storage[i]);
+        }
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        for (int i = 0; i < NODES; i++) {
+            // start may have failed before all nodes were created
+            if (storage[i] != null && !stopped[i]) {
+                stop(i, storage[i]);
+            }
+            if (dao[i] != null) {
+                dao[i].close();
+                Files.recursiveDelete(data[i]);
+            }
+        }
+        endpoints = Collections.emptySet();
+    }
+
+    @Test
+    void upsertGetDelete() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final String key = randomId();
+            final byte[] value = randomValue();
+            assertEquals(201, upsert(0, key, value, 3, 3).getStatus());
+            for (int i = 0; i < NODES; i++) {
+                assertArrayEquals(value, get(i, key, 3, 3).getBody());
+            }
+            assertEquals(202, delete(1, key, 3, 3).getStatus());
+            for (int i = 0; i < NODES; i++) {
+                assertEquals(404, get(i, key, 3, 3).getStatus());
+            }
+        });
+    }
+
+    @Test
+    void newestWins() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final String key = randomId();
+            final byte[] value = randomValue();
+            assertEquals(201, upsert(0, key, randomValue(), 3, 3).getStatus());
+            assertEquals(201, upsert(1, key, value, 3, 3).getStatus());
+            assertArrayEquals(value, get(2, key, 3, 3).getBody());
+        });
+    }
+
+    @Test
+    void stoppedReplica() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final String key = randomId();
+            final byte[] value = randomValue();
+            stop(2, storage[2]);
+            stopped[2] = true;
+            assertEquals(504, upsert(0, key, value, 3, 3).getStatus());
+            assertEquals(201, upsert(0, key, value, 2, 3).getStatus());
+            assertArrayEquals(value, get(1, key, 2, 3).getBody());
+            assertEquals(504, get(1, key, 3, 3).getStatus());
+        });
+    }
+
+    @Test
+    void busyReplicationPortReleasesHttpPort() throws Exception {
+        final int port = randomPorts(1, OFFSET)[0];
+        final ServiceConfig config = new ServiceConfig();
+        config.replicationPortOffset = OFFSET;
+        final File tmp = Files.createTempDirectory();
+        try (DAO local = DAOFactory.create(tmp);
+             ServerSocket busy = new ServerSocket(port + OFFSET)) {
+            assertTrue(busy.isBound());
+            final var topology = new LinkedHashSet<String>();
+            topology.add(endpoint(port));
+            topology.add(endpoints.iterator().next());
+            assertThrows(IOException.class, () -> ServiceFactory.create(port, local, topology, config));
+            // HTTP socket is bound, but not listening until start, so a reusable bind would not notice it
+            try (ServerSocket http = new ServerSocket()) {
+                http.setReuseAddress(false);
+                http.bind(new InetSocketAddress(port));
+            }
+        } finally {
+            Files.recursiveDelete(tmp);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ru.mail.polis.service;
+
+import one.nio.http.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.mail.polis.Files;
+import ru.mail.polis.dao.DAO;
+import ru.mail.polis.dao.DAOFactory;
+import ru.mail.polis.dao.DAOImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Overload of client workers of a two node {@link Service} cluster, where every client task expires in the queue.
+ */
+class ClusterOverloadTest extends ClusterTestBase {
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+    private static final int NODES = 2;
+    private final File[] data = new File[NODES];
+    private final DAO[] dao = new DAO[NODES];
+    private final Service[] storage = new Service[NODES];
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        final int[] ports = new int[NODES];
+        endpoints = new LinkedHashSet<>();
+        for (int i = 0; i < NODES; i++) {
+            ports[i] = randomPort();
+            endpoints.add(endpoint(ports[i]));
+        }
+        final ServiceConfig config = new ServiceConfig();
+        config.maxQueueTimeMillis = 0;
+        config.retryAfterSeconds = 7;
+        for (int i = 0; i < NODES; i++) {
+            data[i] = Files.createTempDirectory();
+            dao[i] = DAOFactory.create(data[i]);
+            storage[i] = ServiceFactory.create(ports[i], dao[i], endpoints, config);
+            start(i, storage[i]);
+        }
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        for (int i = 0; i < NODES; i++) {
+            stop(i, storage[i]);
+            dao[i].close();
+            Files.recursiveDelete(data[i]);
+        }
+        endpoints = Collections.emptySet();
+    }
+
+    @Test
+    void expiredLocalWorkIsOverload() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final String key = randomId();
+            for (final Response response : new Response[]{
+                    upsert(0, key, randomValue(), 2, 2),
+                    get(0, key, 2, 2),
+                    delete(0, key, 2, 2)}) {
+                assertEquals(503, response.getStatus());
+                assertEquals("7", response.getHeader("Retry-After: "));
+            }
+        });
+    }
+
+    @Test
+    void replicaWorkDoesNotExpire() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final String key = randomId();
+            final byte[] value = randomValue();
+            assertEquals(201, upsert(0, key, value, 1, 2).getStatus());
+            final ByteBuffer storedKey = ByteBuffer.wrap(key.getBytes(StandardCharsets.UTF_8));
+            assertArrayEquals(value, ((DAOImpl) dao[1]).getWithTimestamp(storedKey).getValueInByteFormat());
+        });
+    }
+}
@@ -0,0 +1,229 @@
+package ru.mail.polis.service;
+
+import one.nio.http.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.mail.polis.Files;
+import ru.mail.polis.dao.DAO;
+import ru.mail.polis.dao.DAOFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Range API of a three node {@link Service} cluster.
+ */
+class ClusterRangeTest extends ClusterTestBase {
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+    private static final int NODES = 3;
+    private final File[] data = new File[NODES];
+    private final DAO[] dao = new DAO[NODES];
+    private final Service[] storage = new Service[NODES];
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        final int[] ports = new int[NODES];
+        endpoints = new LinkedHashSet<>();
+        for (int i = 0; i < NODES; i++) {
+            ports[i] = randomPort();
+            endpoints.add(endpoint(ports[i]));
+        }
+        for (int i = 0; i < NODES; i++) {
+            data[i] = Files.createTempDirectory();
+            dao[i] = DAOFactory.create(data[i]);
+            storage[i] = ServiceFactory.create(ports[i], dao[i], endpoints);
+            start(i, storage[i]);
+        }
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        for (int i = 0; i < NODES; i++) {
+            stop(i, storage[i]);
+            dao[i].close();
+            Files.recursiveDelete(data[i]);
+        }
+        endpoints = Collections.emptySet();
+    }
+
+    private static byte[] chunksOf(final Map<String, byte[]> records) {
+        final ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+        records.forEach((key, value) -> {
+            chunks.writeBytes((key + '\n').getBytes(StandardCharsets.UTF_8));
+            chunks.writeBytes(value);
+        });
+        return chunks.toByteArray();
+    }
+
+    /**
+     * Append upsert or, for null value, remove of batch write.
+     */
+    private static void mutation(final ByteArrayOutputStream body, final String id, final byte[] value) {
+        final byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        body.write(value == null ? 0 : 1);
+        body.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(key.length).array());
+        body.writeBytes(key);
+        if (value != null) {
+            body.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(value.length).array());
+            body.writeBytes(value);
+        }
+    }
+
+    @Test
+    void newestWinsAndTombstonesDropped() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final NavigableMap<String, byte[]> expected = new TreeMap<>();
+            for (int i = 0; i < 30; i++) {
+                final String key = "key" + i;
+                final byte[] value = randomValue();
+                assertEquals(201, upsert(i % NODES, key, value, 2, 3).getStatus());
+                expected.put(key, value);
+            }
+            for (int i = 0; i < 30; i += 7) {
+                final String key = "key" + i;
+                assertEquals(202, delete((i + 1) % NODES, key, 2, 3).getStatus());
+                expected.remove(key);
+            }
+            for (int i = 1; i < 30; i += 5) {
+                final String key = "key" + i;
+                final byte[] value = randomValue();
+                assertEquals(201, upsert((i + 2) % NODES, key, value, 1, 3).getStatus());
+                expected.put(key, value);
+            }
+
+            final Response all = range(1, "key", null);
+            assertEquals(200, all.getStatus());
+            assertArrayEquals(chunksOf(expected), all.getBody());
+
+            final Response part = range(2, "key1", "key2");
+            assertEquals(200, part.getStatus());
+            assertArrayEquals(chunksOf(expected.subMap("key1", "key2")), part.getBody());
+        });
+    }
+
+    @Test
+    void manyPages() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final Map<String, byte[]> expected = new TreeMap<>();
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            for (int i = 0; i < 5000; i++) {
+                final String key = String.format("key%05d", i);
+                final byte[] value = randomValue();
+                mutation(body, key, value);
+                expected.put(key, value);
+            }
+            assertEquals(200, batchWrite(0, body.toByteArray(), 2, 3).getStatus());
+
+            final Response response = range(1, "key", null);
+            assertEquals(200, response.getStatus());
+            assertArrayEquals(chunksOf(expected), response.getBody());
+        });
+    }
+
+    @Test
+    void tombstoneRunLongerThanPage() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final NavigableMap<String, byte[]> expected = new TreeMap<>();
+            final ByteArrayOutputStream values = new ByteArrayOutputStream();
+            final ByteArrayOutputStream removes = new ByteArrayOutputStream();
+            for (int i = 0; i < 3000; i++) {
+                final String key = String.format("key%05d", i);
+                final byte[] value = randomValue();
+                mutation(values, key, value);
+                if (i < 100 || i >= 2900) {
+                    expected.put(key, value);
+                } else {
+                    mutation(removes, key, null);
+                }
+            }
+            assertEquals(200, batchWrite(0, values.toByteArray(), 3, 3).getStatus());
+            assertEquals(200, batchWrite(1, removes.toByteArray(), 3, 3).getStatus());
+
+            final Response all = range(2, "key", null);
+            assertEquals(200, all.getStatus());
+            assertArrayEquals(chunksOf(expected), all.getBody());
+
+            final Response page = rangePage(0, "start=key00090", 20);
+            assertEquals(200, page.getStatus());
+            assertArrayEquals(chunksOf(expected.subMap("key00090", "key02910")), page.getBody());
+        });
+    }
+
+    @Test
+    void pages() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final NavigableMap<String, byte[]> expected = new TreeMap<>();
+            for (int i = 0; i < 25; i++) {
+                final String key = String.format("key%02d", i);
+                final byte[] value = randomValue();
+                assertEquals(201, upsert(i % NODES, key, value, 2, 3).getStatus());
+                expected.put(key, value);
+            }
+            final ByteArrayOutputStream all = new ByteArrayOutputStream();
+            Response page = rangePage(0, "start=key", 10);
+            int pages = 1;
+            while (page.getHeader("X-OK-Cursor: ") != null) {
+                assertEquals(200, page.getStatus());
+                all.writeBytes(page.getBody());
+                page = rangePage(pages % NODES, "cursor=" + page.getHeader("X-OK-Cursor: "), 10);
+                pages++;
+            }
+            assertEquals(200, page.getStatus());
+            all.writeBytes(page.getBody());
+            assertEquals(3, pages);
+            assertArrayEquals(chunksOf(expected), all.toByteArray());
+        });
+    }
+
+    @Test
+    void singleRecordPages() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final NavigableMap<String, byte[]> expected = new TreeMap<>();
+            for (int i = 0; i < 12; i++) {
+                final String key = String.format("key%02d", i);
+                final byte[] value = randomValue();
+                assertEquals(201, upsert(i % NODES, key, value, 3, 3).getStatus());
+                if (i % 3 == 1) {
+                    assertEquals(202, delete(i % NODES, key, 3, 3).getStatus());
+                } else {
+                    expected.put(key, value);
+                }
+            }
+            final ByteArrayOutputStream all = new ByteArrayOutputStream();
+            Response page = rangePage(0, "start=key", 1);
+            int pages = 1;
+            while (page.getHeader("X-OK-Cursor: ") != null) {
+                assertEquals(200, page.getStatus());
+                all.writeBytes(page.getBody());
+                page = rangePage(pages % NODES, "cursor=" + page.getHeader("X-OK-Cursor: "), 1);
+                pages++;
+            }
+            assertEquals(200, page.getStatus());
+            all.writeBytes(page.getBody());
+            assertEquals(expected.size(), pages);
+            assertArrayEquals(chunksOf(expected), all.toByteArray());
+        });
+    }
+
+    @Test
+    void unreachable() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            stop(0, storage[0]);
+            assertEquals(504, range(1, "key", null).getStatus());
+        });
+    }
+}
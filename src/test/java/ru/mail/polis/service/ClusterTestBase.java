@@ -23,7 +23,13 @@ import one.nio.net.ConnectionString;
 import org.jetbrains.annotations.NotNull;
 import ru.mail.polis.TestBase;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -38,6 +44,54 @@ abstract class ClusterTestBase extends TestBase {
     private final Map<String, HttpClient> hostToClient = new HashMap<>();
     Set<String> endpoints;
 
+    /**
+     * Free HTTP ports of nodes whose replication ports, HTTP port plus offset, are free too.
+     * All probed ports are held until every node has its pair, so pairs don't overlap.
+     *
+     * @param nodes amount of nodes
+     * @param replicationPortOffset offset of replication port, 0 if replication protocol is off
+     * @return HTTP ports
+     */
+    static int[] randomPorts(final int nodes, final int replicationPortOffset) throws IOException {
+        final int[] ports = new int[nodes];
+        final List<ServerSocket> probes = new ArrayList<>();
+        try {
+            for (int i = 0; i < nodes; i++) {
+                while (ports[i] == 0) {
+                    final ServerSocket http = probe(0);
+                    probes.add(http);
+                    final int port = http.getLocalPort();
+                    try {
+                        if (replicationPortOffset > 0) {
+                            probes.add(probe(port + replicationPortOffset));
+                        }
+                        ports[i] = port;
+                    } catch (IOException e) {
+                        // replication port is taken, e.g. by an outgoing connection
+                    }
+                }
+            }
+        } finally {
+            for (final ServerSocket probe : probes) {
+                probe.close();
+            }
+        }
+        return ports;
+    }
+
+    private static ServerSocket probe(final int port) throws IOException {
+        final ServerSocket socket = new ServerSocket();
+        try {
+            // the same options as the replication server
+            socket.setReuseAddress(true);
+            socket.bind(new InetSocketAddress(port));
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
     @NotNull
     private HttpClient client(final int node) {
         final String endpoint = Iterators.get(endpoints.iterator(), node);
@@ -131,4 +185,42 @@ abstract class ClusterTestBase extends TestBase {
             final int from) throws Exception {
         return client(node).put(path(key, ack, from), data);
     }
+
+    Response upsert(
+            final int node,
+            @NotNull final String key,
+            @NotNull final byte[] data,
+            @NotNull final String... headers) throws Exception {
+        return client(node).put(path(key, 1, 1), data, headers);
+    }
+
+    Response batchGet(
+            final int node,
+            @NotNull final String body,
+            final int ack,
+            final int from) throws Exception {
+        return client(node).post("/v0/batch/get?replicas=" + ack + "/" + from, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    Response batchWrite(
+            final int node,
+            @NotNull final byte[] body,
+            final int ack,
+            final int from) throws Exception {
+        return client(node).post("/v0/batch/write?replicas=" + ack + "/" + from, body);
+    }
+
+    Response range(
+            final int node,
+            @NotNull final String start,
+            final String end) throws Exception {
+        return client(node).get("/v0/entities?start=" + start + (end == null ? "" : "&end=" + end));
+    }
+
+    Response rangePage(
+            final int node,
+            @NotNull final String position,
+            final int limit) throws Exception {
+        return client(node).get("/v0/entities?" + position + "&limit=" + limit);
+    }
 }
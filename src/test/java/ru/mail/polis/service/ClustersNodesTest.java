@@ -0,0 +1,126 @@
+package ru.mail.polis.service;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import org.junit.jupiter.api.Test;
+import ru.mail.polis.service.luckydaemon.ClustersNodes;
+import ru.mail.polis.service.luckydaemon.PartitionHasher;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link ClustersNodes} partitioning.
+ */
+class ClustersNodesTest {
+    private static final int KEYS = 100_000;
+    private static final Set<String> THREE_NODES = ImmutableSet.of(
+            "http://localhost:8080",
+            "http://localhost:8081",
+            "http://localhost:8082");
+    private static final Set<String> FOUR_NODES = ImmutableSet.<String>builder()
+            .addAll(THREE_NODES)
+            .add("http://localhost:8083")
+            .build();
+
+    private static ByteBuffer key(final int i) {
+        return bytes("key" + i);
+    }
+
+    private static ByteBuffer bytes(final String id) {
+        return ByteBuffer.wrap(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Ratio of the most loaded node to the ideal share.
+     */
+    private static double skew(final PartitionHasher hasher, final IntFunction<String> ids) {
+        final ClustersNodes nodes = new ClustersNodes(THREE_NODES, "http://localhost:8080",
+                ClustersNodes.DEFAULT_VIRTUAL_NODES, hasher);
+        final Map<String, Integer> perNode = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            perNode.merge(nodes.keyCheck(bytes(ids.apply(i))), 1, Integer::sum);
+        }
+        final int max = perNode.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+        return max * (double) THREE_NODES.size() / KEYS;
+    }
+
+    @Test
+    void sameOwnerOnEveryNode() {
+        final ClustersNodes first = new ClustersNodes(THREE_NODES, "http://localhost:8080");
+        final ClustersNodes second = new ClustersNodes(THREE_NODES, "http://localhost:8082");
+        for (int i = 0; i < 1000; i++) {
+            assertArrayEquals(first.getReplics(3, key(i)), second.getReplics(3, key(i)));
+            assertEquals(first.keyCheck(key(i)), first.getReplics(1, key(i))[0]);
+        }
+    }
+
+    @Test
+    void distinctReplicas() {
+        final ClustersNodes nodes = new ClustersNodes(FOUR_NODES, "http://localhost:8080");
+        for (int i = 0; i < 1000; i++) {
+            final String[] replicas = nodes.getReplics(4, key(i));
+            assertEquals(4, new HashSet<>(Arrays.asList(replicas)).size());
+        }
+    }
+
+    @Test
+    void growingClusterMovesFewKeys() {
+        final ClustersNodes before = new ClustersNodes(THREE_NODES, "http://localhost:8080");
+        final ClustersNodes after = new ClustersNodes(FOUR_NODES, "http://localhost:8080");
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            if (!before.keyCheck(key(i)).equals(after.keyCheck(key(i)))) {
+                moved++;
+            }
+        }
+        // Ideally a quarter of keys move to the new node, modulo hashing moves about 3/4 of them
+        assertTrue(moved < KEYS * 0.4, "moved " + moved + " of " + KEYS);
+    }
+
+    @Test
+    void murmur3MatchesReference() {
+        for (int length = 0; length < 64; length++) {
+            final byte[] array = new byte[length + 3];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = (byte) (i * 37 + length);
+            }
+            final int expected = Hashing.murmur3_32().hashBytes(array, 3, length).asInt();
+            final ByteBuffer slice = ByteBuffer.wrap(array, 3, length);
+            assertEquals(expected, PartitionHasher.MURMUR3.hash(slice));
+            assertEquals(3, slice.position());
+
+            final ByteBuffer direct = ByteBuffer.allocateDirect(length).order(ByteOrder.LITTLE_ENDIAN);
+            direct.put(array, 3, length).flip();
+            assertEquals(expected, PartitionHasher.MURMUR3.hash(direct));
+        }
+    }
+
+    @Test
+    void keySkew() {
+        final Map<String, IntFunction<String>> patterns = new HashMap<>();
+        patterns.put("sequential", Integer::toString);
+        patterns.put("prefixed", i -> String.format("user:%08d", i));
+        patterns.put("timestamp", i -> Long.toString(1_570_000_000_000L + i));
+        patterns.put("uuid", i -> new UUID(0x5eedL, i).toString());
+        for (final Map.Entry<String, IntFunction<String>> pattern : patterns.entrySet()) {
+            final double polynomial = skew(PartitionHasher.BYTE_BUFFER, pattern.getValue());
+            final double murmur = skew(PartitionHasher.MURMUR3, pattern.getValue());
+            System.out.printf("%-10s max node load: hashCode %.3f, murmur3 %.3f of ideal%n",
+                    pattern.getKey(), polynomial, murmur);
+            assertTrue(murmur < 1.25, pattern.getKey() + " skew " + murmur);
+        }
+    }
+}
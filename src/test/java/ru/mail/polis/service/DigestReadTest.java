@@ -0,0 +1,123 @@
+package ru.mail.polis.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.mail.polis.Files;
+import ru.mail.polis.dao.DAO;
+import ru.mail.polis.dao.DAOFactory;
+import ru.mail.polis.dao.DAOImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Digest reads of a three node {@link Service} cluster over HTTP and over the binary replication protocol.
+ */
+class DigestReadTest extends ClusterTestBase {
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+    private static final int NODES = 3;
+    private final File[] data = new File[NODES];
+    private final DAO[] dao = new DAO[NODES];
+    private final Service[] storage = new Service[NODES];
+
+    private void start(final int replicationPortOffset) throws Exception {
+        final int[] ports = randomPorts(NODES, replicationPortOffset);
+        endpoints = new LinkedHashSet<>();
+        for (final int port : ports) {
+            endpoints.add(endpoint(port));
+        }
+        final ServiceConfig config = new ServiceConfig();
+        config.digestReads = true;
+        config.replicationPortOffset = replicationPortOffset;
+        for (int i = 0; i < NODES; i++) {
+            data[i] = Files.createTempDirectory();
+            dao[i] = DAOFactory.create(data[i]);
+            storage[i] = ServiceFactory.create(ports[i], dao[i], endpoints, config);
+            start(i, storage[i]);
+        }
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        for (int i = 0; i < NODES; i++) {
+            // start may have failed before all nodes were created
+            if (storage[i] != null) {
+                stop(i, storage[i]);
+            }
+            if (dao[i] != null) {
+                dao[i].close();
+                Files.recursiveDelete(data[i]);
+            }
+        }
+        endpoints = Collections.emptySet();
+    }
+
+    private static ByteBuffer keyOf(final String id) {
+        return ByteBuffer.wrap(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void sameVersion() throws Exception {
+        final String key = randomId();
+        final byte[] value = randomValue();
+        assertEquals(201, upsert(0, key, value, 3, 3).getStatus());
+        for (int i = 0; i < NODES; i++) {
+            assertArrayEquals(value, get(i, key, 3, 3).getBody());
+            assertArrayEquals(value, get(i, key, 2, 3).getBody());
+        }
+        assertEquals(202, delete(1, key, 3, 3).getStatus());
+        assertEquals(404, get(2, key, 3, 3).getStatus());
+    }
+
+    private void newerDigest() throws Exception {
+        final String key = randomId();
+        assertEquals(201, upsert(0, key, randomValue(), 3, 3).getStatus());
+        // only other replica has the newest version, so the value is fetched from it
+        final byte[] newer = randomValue();
+        ((DAOImpl) dao[1]).upsertWithTimestamp(keyOf(key), ByteBuffer.wrap(newer), System.currentTimeMillis() + 1000);
+        assertArrayEquals(newer, get(0, key, 3, 3).getBody());
+
+        ((DAOImpl) dao[2]).removeWithTimestamp(keyOf(key), System.currentTimeMillis() + 2000);
+        assertEquals(404, get(0, key, 3, 3).getStatus());
+    }
+
+    @Test
+    void sameVersionOverHttp() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            start(0);
+            sameVersion();
+        });
+    }
+
+    @Test
+    void newerDigestOverHttp() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            start(0);
+            newerDigest();
+        });
+    }
+
+    @Test
+    void sameVersionOverBinaryProtocol() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            start(1);
+            sameVersion();
+        });
+    }
+
+    @Test
+    void newerDigestOverBinaryProtocol() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            start(1);
+            newerDigest();
+        });
+    }
+}
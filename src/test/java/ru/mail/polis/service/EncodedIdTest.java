@@ -0,0 +1,77 @@
+package ru.mail.polis.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.mail.polis.Files;
+import ru.mail.polis.dao.DAO;
+import ru.mail.polis.dao.DAOFactory;
+import ru.mail.polis.dao.DAOImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ids with characters reserved in uri, replicated by a three node {@link Service} cluster.
+ */
+class EncodedIdTest extends ClusterTestBase {
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+    private static final int NODES = 3;
+    private static final String ID = "a b%c\"d|e{f}g+h&i=j";
+    private final File[] data = new File[NODES];
+    private final DAO[] dao = new DAO[NODES];
+    private final Service[] storage = new Service[NODES];
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        final int[] ports = new int[NODES];
+        endpoints = new LinkedHashSet<>();
+        for (int i = 0; i < NODES; i++) {
+            ports[i] = randomPort();
+            endpoints.add(endpoint(ports[i]));
+        }
+        for (int i = 0; i < NODES; i++) {
+            data[i] = Files.createTempDirectory();
+            dao[i] = DAOFactory.create(data[i]);
+            storage[i] = ServiceFactory.create(ports[i], dao[i], endpoints);
+            start(i, storage[i]);
+        }
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        for (int i = 0; i < NODES; i++) {
+            stop(i, storage[i]);
+            dao[i].close();
+            Files.recursiveDelete(data[i]);
+        }
+        endpoints = Collections.emptySet();
+    }
+
+    @Test
+    void reservedCharactersReplicated() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final String encoded = URLEncoder.encode(ID, StandardCharsets.UTF_8);
+            final byte[] value = randomValue();
+            assertEquals(201, upsert(0, encoded, value, 3, 3).getStatus());
+            final ByteBuffer key = ByteBuffer.wrap(ID.getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < NODES; i++) {
+                assertTrue(((DAOImpl) dao[i]).getWithTimestamp(key).isValue());
+                assertArrayEquals(value, get(i, encoded, 3, 3).getBody());
+            }
+            assertEquals(202, delete(1, encoded, 3, 3).getStatus());
+            assertEquals(404, get(2, encoded, 3, 3).getStatus());
+        });
+    }
+}
@@ -0,0 +1,107 @@
+package ru.mail.polis.service;
+
+import com.google.common.collect.Iterators;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.mail.polis.Files;
+import ru.mail.polis.dao.DAO;
+import ru.mail.polis.dao.DAOFactory;
+import ru.mail.polis.service.luckydaemon.ClustersNodes;
+import ru.mail.polis.service.luckydaemon.HedgeStats;
+import ru.mail.polis.service.luckydaemon.ServiceImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Hedged reads of a three node cluster where one node accepts connections but never answers.
+ */
+class HedgedReadTest extends ClusterTestBase {
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+    private static final int NODES = 3;
+    private static final int SILENT = 2;
+    private final File[] data = new File[SILENT];
+    private final DAO[] dao = new DAO[SILENT];
+    private final Service[] storage = new Service[SILENT];
+    private ServerSocket silent;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        final int[] ports = new int[NODES];
+        endpoints = new LinkedHashSet<>();
+        for (int i = 0; i < NODES; i++) {
+            ports[i] = randomPort();
+            endpoints.add(endpoint(ports[i]));
+        }
+        silent = new ServerSocket();
+        silent.bind(new InetSocketAddress(ports[SILENT]), 128);
+        final ServiceConfig config = new ServiceConfig();
+        config.hedgedReads = true;
+        config.peerTimeoutMillis = 600;
+        for (int i = 0; i < SILENT; i++) {
+            data[i] = Files.createTempDirectory();
+            dao[i] = DAOFactory.create(data[i]);
+            storage[i] = ServiceFactory.create(ports[i], dao[i], endpoints, config);
+            start(i, storage[i]);
+        }
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        for (int i = 0; i < SILENT; i++) {
+            stop(i, storage[i]);
+            dao[i].close();
+            Files.recursiveDelete(data[i]);
+        }
+        silent.close();
+        endpoints = Collections.emptySet();
+    }
+
+    /**
+     * Key which node 0 reads from the silent node before the other live node.
+     */
+    private String silentFirstKey() {
+        final String coordinator = Iterators.get(endpoints.iterator(), 0);
+        final String silentNode = Iterators.get(endpoints.iterator(), SILENT);
+        final ClustersNodes nodes = new ClustersNodes(endpoints, coordinator);
+        while (true) {
+            final String key = randomId();
+            final List<String> replicas = Arrays.asList(
+                    nodes.getReplics(NODES, ByteBuffer.wrap(key.getBytes(StandardCharsets.UTF_8))));
+            final int live = replicas.indexOf(Iterators.get(endpoints.iterator(), 1));
+            if (replicas.indexOf(silentNode) < live) {
+                return key;
+            }
+        }
+    }
+
+    @Test
+    void slowReplicaIsHedged() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final String key = silentFirstKey();
+            final byte[] value = randomValue();
+            assertEquals(201, upsert(0, key, value, 2, 3).getStatus());
+
+            final HedgeStats stats = ((ServiceImpl) storage[0]).getHedgeStats();
+            assertArrayEquals(value, get(0, key, 2, 3).getBody());
+            assertEquals(1, stats.getReads());
+            assertEquals(1, stats.getHedged());
+            assertEquals(1, stats.getWon());
+            assertEquals(1.0, stats.getWinRate());
+        });
+    }
+}
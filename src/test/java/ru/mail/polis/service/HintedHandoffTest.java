@@ -0,0 +1,208 @@
+package ru.mail.polis.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.mail.polis.Files;
+import ru.mail.polis.dao.DAO;
+import ru.mail.polis.dao.DAOFactory;
+import ru.mail.polis.dao.DAOImpl;
+import ru.mail.polis.dao.RecordTimestamp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hinted handoff of writes which a node of a three node {@link Service} cluster missed while it was down.
+ */
+class HintedHandoffTest extends ClusterTestBase {
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+    private static final int NODES = 3;
+    private static final int DOWN = 2;
+    private final int[] ports = new int[NODES];
+    private final File[] data = new File[NODES];
+    private final DAO[] dao = new DAO[NODES];
+    private final Service[] storage = new Service[NODES];
+    private final ServiceConfig config = new ServiceConfig();
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        endpoints = new LinkedHashSet<>();
+        for (int i = 0; i < NODES; i++) {
+            ports[i] = randomPort();
+            endpoints.add(endpoint(ports[i]));
+        }
+        config.hintedHandoff = true;
+        config.hintReplayIntervalMillis = 100;
+        config.hintReplayBatch = 1;
+        // hints must not depend on the repair queue
+        config.repairThreads = 1;
+        config.repairQueueCapacity = 1;
+        for (int i = 0; i < NODES; i++) {
+            data[i] = Files.createTempDirectory();
+            dao[i] = DAOFactory.create(data[i]);
+            storage[i] = ServiceFactory.create(ports[i], dao[i], endpoints, config);
+            start(i, storage[i]);
+        }
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        for (int i = 0; i < NODES; i++) {
+            stop(i, storage[i]);
+            dao[i].close();
+            Files.recursiveDelete(data[i]);
+        }
+        endpoints = Collections.emptySet();
+    }
+
+    private static ByteBuffer keyOf(final String id) {
+        return ByteBuffer.wrap(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void restartDown() throws Exception {
+        storage[DOWN] = ServiceFactory.create(ports[DOWN], dao[DOWN], endpoints, config);
+        start(DOWN, storage[DOWN]);
+    }
+
+    private RecordTimestamp awaitRecord(final String key) throws Exception {
+        return awaitRecord(keyOf(key));
+    }
+
+    private RecordTimestamp awaitRecord(final ByteBuffer key) throws Exception {
+        while (true) {
+            final RecordTimestamp record = ((DAOImpl) dao[DOWN]).getWithTimestamp(key);
+            if (!record.isMissing()) {
+                return record;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private void awaitNoHints() throws Exception {
+        final String down = endpoint(ports[DOWN]);
+        while (!((DAOImpl) dao[0]).getHints().get(down, 1).isEmpty()) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void missedWritesHandedOff() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            stop(DOWN, storage[DOWN]);
+            final String[] keys = {randomId(), randomId(), randomId()};
+            final byte[][] values = new byte[keys.length][];
+            for (int i = 0; i < keys.length; i++) {
+                values[i] = randomValue();
+                assertEquals(201, upsert(0, keys[i], values[i], 2, 3).getStatus());
+            }
+
+            restartDown();
+            for (int i = 0; i < keys.length; i++) {
+                assertArrayEquals(values[i], awaitRecord(keys[i]).getValueInByteFormat());
+            }
+            awaitNoHints();
+        });
+    }
+
+    @Test
+    void missedDeleteHandedOff() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final String key = randomId();
+            assertEquals(201, upsert(0, key, randomValue(), 3, 3).getStatus());
+            stop(DOWN, storage[DOWN]);
+            assertEquals(202, delete(0, key, 2, 3).getStatus());
+
+            restartDown();
+            while (!awaitRecord(key).isDeleted()) {
+                Thread.sleep(10);
+            }
+            awaitNoHints();
+        });
+    }
+
+    @Test
+    void missedBatchHandedOff() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            stop(DOWN, storage[DOWN]);
+            final String[] keys = new String[50];
+            final byte[][] values = new byte[keys.length][];
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = randomId();
+                values[i] = randomValue();
+                final byte[] key = keys[i].getBytes(StandardCharsets.UTF_8);
+                body.write(1);
+                body.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(key.length).array());
+                body.writeBytes(key);
+                body.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(values[i].length).array());
+                body.writeBytes(values[i]);
+            }
+            assertEquals(200, batchWrite(0, body.toByteArray(), 2, 3).getStatus());
+
+            restartDown();
+            for (int i = 0; i < keys.length; i++) {
+                assertArrayEquals(values[i], awaitRecord(keys[i]).getValueInByteFormat());
+            }
+            awaitNoHints();
+        });
+    }
+
+    @Test
+    void binaryKeyHandedOff() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            stop(DOWN, storage[DOWN]);
+            // not UTF-8, so the key can't be sent as id
+            final byte[] key = {(byte) 0xff, 0, (byte) 0xc3, '\n'};
+            final byte[] value = randomValue();
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            body.write(1);
+            body.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(key.length).array());
+            body.writeBytes(key);
+            body.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(value.length).array());
+            body.writeBytes(value);
+            assertEquals(200, batchWrite(0, body.toByteArray(), 2, 3).getStatus());
+
+            restartDown();
+            assertArrayEquals(value, awaitRecord(ByteBuffer.wrap(key)).getValueInByteFormat());
+            awaitNoHints();
+        });
+    }
+
+    @Test
+    void refusedHintDropped() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            stop(DOWN, storage[DOWN]);
+            // node refuses a batch with empty key, the hint is first in the queue of the node
+            ((DAOImpl) dao[0]).getHints().add(endpoint(ports[DOWN]), ByteBuffer.allocate(0),
+                    RecordTimestamp.fromValue(ByteBuffer.wrap(randomValue()), 1));
+            final String key = randomId();
+            final byte[] value = randomValue();
+            assertEquals(201, upsert(0, key, value, 2, 3).getStatus());
+
+            restartDown();
+            assertArrayEquals(value, awaitRecord(key).getValueInByteFormat());
+            awaitNoHints();
+        });
+    }
+
+    @Test
+    void noHintsWhenReplicasAreUp() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final String key = randomId();
+            assertEquals(201, upsert(0, key, randomValue(), 3, 3).getStatus());
+            assertTrue(((DAOImpl) dao[0]).getHints().get(endpoint(ports[DOWN]), 1).isEmpty());
+        });
+    }
+}
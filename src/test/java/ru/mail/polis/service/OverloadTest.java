@@ -0,0 +1,95 @@
+package ru.mail.polis.service;
+
+import one.nio.http.HttpClient;
+import one.nio.http.Response;
+import one.nio.net.ConnectionString;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.mail.polis.Files;
+import ru.mail.polis.TestBase;
+import ru.mail.polis.dao.DAO;
+import ru.mail.polis.dao.DAOFactory;
+import ru.mail.polis.service.luckydaemon.ServiceImpl;
+import ru.mail.polis.service.luckydaemon.WorkQueueStats;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Load shedding and execution modes of a single node {@link Service}.
+ */
+class OverloadTest extends TestBase {
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+    private File data;
+    private DAO dao;
+    private Service storage;
+    private HttpClient client;
+
+    private void start(final ServiceConfig config) throws Exception {
+        final int port = randomPort();
+        data = Files.createTempDirectory();
+        dao = DAOFactory.create(data);
+        storage = ServiceFactory.create(port, dao, Collections.singleton(endpoint(port)), config);
+        storage.start();
+        client = new HttpClient(new ConnectionString(endpoint(port) + "?timeout=" + (TIMEOUT.toMillis() / 2)));
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        client.close();
+        storage.stop();
+        dao.close();
+        Files.recursiveDelete(data);
+    }
+
+    @Test
+    void expiredInQueue() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final ServiceConfig config = new ServiceConfig();
+            config.maxQueueTimeMillis = 0;
+            config.retryAfterSeconds = 7;
+            start(config);
+
+            final Response response = client.put("/v0/entity?id=key", randomValue());
+            assertEquals(503, response.getStatus());
+            assertEquals("7", response.getHeader("Retry-After: "));
+
+            final WorkQueueStats stats = ((ServiceImpl) storage).getWorkQueueStats();
+            assertTrue(stats.getExpired() > 0);
+            assertEquals(0, stats.getRejected());
+        });
+    }
+
+    @Test
+    void virtualThreads() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final ServiceConfig config = new ServiceConfig();
+            config.virtualThreads = true;
+            start(config);
+            // platform threads are used on JDK without virtual threads
+            assertEquals(201, client.put("/v0/entity?id=key", randomValue()).getStatus());
+            assertEquals(200, client.get("/v0/entity?id=key").getStatus());
+        });
+    }
+
+    @Test
+    void notOverloaded() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            start(new ServiceConfig());
+            final byte[] value = randomValue();
+            assertEquals(201, client.put("/v0/entity?id=key", value).getStatus());
+            assertEquals(200, client.get("/v0/entity?id=key").getStatus());
+
+            final WorkQueueStats stats = ((ServiceImpl) storage).getWorkQueueStats();
+            assertEquals(2, stats.getSubmitted());
+            assertEquals(0, stats.getExpired());
+            assertEquals(0, stats.getQueueDepth());
+        });
+    }
+}
@@ -0,0 +1,165 @@
+package ru.mail.polis.service;
+
+import one.nio.http.HttpClient;
+import one.nio.http.Response;
+import one.nio.net.ConnectionString;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.mail.polis.Files;
+import ru.mail.polis.TestBase;
+import ru.mail.polis.dao.DAO;
+import ru.mail.polis.dao.DAOFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Paged range API of a single node {@link Service}.
+ */
+class PagedRangeTest extends TestBase {
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+    private static final String CURSOR = "X-OK-Cursor: ";
+    private File data;
+    private DAO dao;
+    private Service storage;
+    private HttpClient client;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        final int port = randomPort();
+        data = Files.createTempDirectory();
+        dao = DAOFactory.create(data);
+        storage = ServiceFactory.create(port, dao, Collections.singleton(endpoint(port)));
+        storage.start();
+        client = new HttpClient(new ConnectionString(endpoint(port) + "?timeout=" + (TIMEOUT.toMillis() / 2)));
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        client.close();
+        storage.stop();
+        dao.close();
+        Files.recursiveDelete(data);
+    }
+
+    private Map<String, byte[]> fill(final int count) throws Exception {
+        final Map<String, byte[]> expected = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            final String key = String.format("key%03d", i);
+            final byte[] value = randomValue();
+            assertEquals(201, client.put("/v0/entity?id=" + key, value).getStatus());
+            expected.put(key, value);
+        }
+        return expected;
+    }
+
+    @NotNull
+    private static byte[] chunksOf(@NotNull final Map<String, byte[]> records) {
+        final ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+        records.forEach((key, value) -> {
+            chunks.writeBytes((key + '\n').getBytes(StandardCharsets.UTF_8));
+            chunks.writeBytes(value);
+        });
+        return chunks.toByteArray();
+    }
+
+    @Test
+    void pages() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final Map<String, byte[]> expected = fill(25);
+            final ByteArrayOutputStream all = new ByteArrayOutputStream();
+            Response page = client.get("/v0/entities?start=key&limit=10");
+            int pages = 1;
+            while (page.getHeader(CURSOR) != null) {
+                assertEquals(200, page.getStatus());
+                all.writeBytes(page.getBody());
+                page = client.get("/v0/entities?limit=10&cursor=" + page.getHeader(CURSOR));
+                pages++;
+            }
+            assertEquals(200, page.getStatus());
+            all.writeBytes(page.getBody());
+            assertEquals(3, pages);
+            assertArrayEquals(chunksOf(expected), all.toByteArray());
+        });
+    }
+
+    @Test
+    void lastPageIsFull() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final Map<String, byte[]> expected = fill(10);
+            final Response page = client.get("/v0/entities?start=key&end=key999&limit=10");
+            assertEquals(200, page.getStatus());
+            assertNull(page.getHeader(CURSOR));
+            assertArrayEquals(chunksOf(expected), page.getBody());
+        });
+    }
+
+    @Test
+    void nextPagesReadSnapshot() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final Map<String, byte[]> expected = fill(20);
+            final Response first = client.get("/v0/entities?start=key&limit=10");
+            final String cursor = first.getHeader(CURSOR);
+            assertNotNull(cursor);
+
+            assertEquals(201, client.put("/v0/entity?id=key015a", randomValue()).getStatus());
+            assertEquals(202, client.delete("/v0/entity?id=key016").getStatus());
+
+            final Response second = client.get("/v0/entities?limit=10&cursor=" + cursor);
+            assertEquals(200, second.getStatus());
+            assertNull(second.getHeader(CURSOR));
+            final ByteArrayOutputStream all = new ByteArrayOutputStream();
+            all.writeBytes(first.getBody());
+            all.writeBytes(second.getBody());
+            assertArrayEquals(chunksOf(expected), all.toByteArray());
+        });
+    }
+
+    @Test
+    void singlePagesReleaseSnapshots() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final Map<String, byte[]> expected = fill(20);
+            for (int i = 0; i < 100; i++) {
+                final Response single = client.get("/v0/entities?start=key&end=key005&limit=10");
+                assertEquals(200, single.getStatus());
+                assertNull(single.getHeader(CURSOR));
+            }
+
+            final Response first = client.get("/v0/entities?start=key&limit=10");
+            final String cursor = first.getHeader(CURSOR);
+            assertNotNull(cursor);
+            assertEquals(202, client.delete("/v0/entity?id=key016").getStatus());
+
+            final Response second = client.get("/v0/entities?limit=10&cursor=" + cursor);
+            final ByteArrayOutputStream all = new ByteArrayOutputStream();
+            all.writeBytes(first.getBody());
+            all.writeBytes(second.getBody());
+            assertArrayEquals(chunksOf(expected), all.toByteArray());
+        });
+    }
+
+    @Test
+    void badRequest() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            assertEquals(400, client.get("/v0/entities?start=key&limit=0").getStatus());
+            assertEquals(400, client.get("/v0/entities?start=key&limit=1000000").getStatus());
+            assertEquals(400, client.get("/v0/entities?start=key&limit=ten").getStatus());
+            assertEquals(400, client.get("/v0/entities?limit=10&cursor=!!!").getStatus());
+            assertEquals(400, client.get("/v0/entities?limit=10&cursor=AA").getStatus());
+        });
+    }
+}
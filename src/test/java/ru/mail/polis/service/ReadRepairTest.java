@@ -0,0 +1,158 @@
+package ru.mail.polis.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.mail.polis.Files;
+import ru.mail.polis.dao.DAO;
+import ru.mail.polis.dao.DAOFactory;
+import ru.mail.polis.dao.DAOImpl;
+import ru.mail.polis.dao.RecordTimestamp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Read repair of stale replicas of a three node {@link Service} cluster.
+ */
+class ReadRepairTest extends ClusterTestBase {
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+    private static final int NODES = 3;
+    private static final int RACES = 1000;
+    private final File[] data = new File[NODES];
+    private final DAO[] dao = new DAO[NODES];
+    private final Service[] storage = new Service[NODES];
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        final int[] ports = new int[NODES];
+        endpoints = new LinkedHashSet<>();
+        for (int i = 0; i < NODES; i++) {
+            ports[i] = randomPort();
+            endpoints.add(endpoint(ports[i]));
+        }
+        final ServiceConfig config = new ServiceConfig();
+        config.readRepairChance = 1;
+        for (int i = 0; i < NODES; i++) {
+            data[i] = Files.createTempDirectory();
+            dao[i] = DAOFactory.create(data[i]);
+            storage[i] = ServiceFactory.create(ports[i], dao[i], endpoints, config);
+            start(i, storage[i]);
+        }
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        for (int i = 0; i < NODES; i++) {
+            stop(i, storage[i]);
+            dao[i].close();
+            Files.recursiveDelete(data[i]);
+        }
+        endpoints = Collections.emptySet();
+    }
+
+    private static ByteBuffer keyOf(final String id) {
+        return ByteBuffer.wrap(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private RecordTimestamp awaitTimestamp(final int node, final String key, final long timestamp) throws Exception {
+        while (true) {
+            final RecordTimestamp record = ((DAOImpl) dao[node]).getWithTimestamp(keyOf(key));
+            if (record.getTimestamp() == timestamp) {
+                return record;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void staleValuesRepaired() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final String key = randomId();
+            assertEquals(201, upsert(0, key, randomValue(), 3, 3).getStatus());
+            final byte[] newer = randomValue();
+            final long timestamp = System.currentTimeMillis() + 1000;
+            ((DAOImpl) dao[1]).upsertWithTimestamp(keyOf(key), ByteBuffer.wrap(newer), timestamp);
+
+            assertArrayEquals(newer, get(0, key, 3, 3).getBody());
+            for (final int node : new int[]{0, 2}) {
+                final RecordTimestamp record = awaitTimestamp(node, key, timestamp);
+                assertArrayEquals(newer, record.getValueInByteFormat());
+            }
+        });
+    }
+
+    @Test
+    void tombstoneRepaired() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final String key = randomId();
+            assertEquals(201, upsert(0, key, randomValue(), 3, 3).getStatus());
+            final long timestamp = System.currentTimeMillis() + 1000;
+            ((DAOImpl) dao[2]).removeWithTimestamp(keyOf(key), timestamp);
+
+            assertEquals(404, get(1, key, 3, 3).getStatus());
+            for (final int node : new int[]{0, 1}) {
+                assertTrue(awaitTimestamp(node, key, timestamp).isDeleted());
+            }
+        });
+    }
+
+    @Test
+    void repairNeverOverwritesNewer() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final String key = randomId();
+            final byte[] newest = randomValue();
+            final long timestamp = System.currentTimeMillis() + 1000;
+            ((DAOImpl) dao[0]).upsertWithTimestamp(keyOf(key), ByteBuffer.wrap(newest), timestamp);
+            ((DAOImpl) dao[0]).repairWithTimestamp(keyOf(key), RecordTimestamp.tombstone(timestamp - 1));
+            assertArrayEquals(newest, awaitTimestamp(0, key, timestamp).getValueInByteFormat());
+        });
+    }
+
+    @Test
+    void concurrentRepairNeverOverwritesNewer() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final DAOImpl local = (DAOImpl) dao[0];
+            final ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                for (int i = 0; i < RACES; i++) {
+                    final ByteBuffer key = keyOf(randomId());
+                    final byte[] newest = randomValue();
+                    final long timestamp = System.currentTimeMillis() + 1000;
+                    final CyclicBarrier barrier = new CyclicBarrier(2);
+                    final Future<?> write = executor.submit(() -> {
+                        barrier.await();
+                        local.upsertWithTimestamp(key, ByteBuffer.wrap(newest), timestamp);
+                        return null;
+                    });
+                    final Future<?> repair = executor.submit(() -> {
+                        barrier.await();
+                        local.repairWithTimestamp(key, RecordTimestamp.tombstone(timestamp - 1));
+                        return null;
+                    });
+                    write.get();
+                    repair.get();
+                    final RecordTimestamp record = local.getWithTimestamp(key);
+                    assertEquals(timestamp, record.getTimestamp());
+                    assertArrayEquals(newest, record.getValueInByteFormat());
+                }
+            } finally {
+                executor.shutdown();
+            }
+        });
+    }
+}
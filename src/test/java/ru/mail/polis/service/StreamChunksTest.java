@@ -0,0 +1,72 @@
+package ru.mail.polis.service;
+
+import one.nio.http.HttpClient;
+import one.nio.http.Response;
+import one.nio.net.ConnectionString;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.mail.polis.Files;
+import ru.mail.polis.TestBase;
+import ru.mail.polis.dao.DAO;
+import ru.mail.polis.dao.DAOFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Streams of single node range API spanning many chunk buffers.
+ */
+class StreamChunksTest extends TestBase {
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+    private File data;
+    private DAO dao;
+    private Service storage;
+    private HttpClient client;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        final int port = randomPort();
+        data = Files.createTempDirectory();
+        dao = DAOFactory.create(data);
+        storage = ServiceFactory.create(port, dao, Collections.singleton(endpoint(port)));
+        storage.start();
+        client = new HttpClient(new ConnectionString(endpoint(port) + "?timeout=" + TIMEOUT.toMillis() / 2));
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        client.close();
+        storage.stop();
+        dao.close();
+        Files.recursiveDelete(data);
+    }
+
+    @Test
+    void smallAndHugeRecords() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            for (int i = 0; i < 3000; i++) {
+                final String key = String.format("key%05d", i);
+                final byte[] value = i % 1000 == 500 ? randomBuffer(200_000).array() : randomValue();
+                assertEquals(201, client.put("/v0/entity?id=" + key, value).getStatus());
+                expected.writeBytes((key + '\n').getBytes(StandardCharsets.UTF_8));
+                expected.writeBytes(value);
+            }
+
+            for (int i = 0; i < 3; i++) {
+                final Response response = client.get("/v0/entities?start=key");
+                assertEquals(200, response.getStatus());
+                assertArrayEquals(expected.toByteArray(), response.getBody());
+            }
+        });
+    }
+}
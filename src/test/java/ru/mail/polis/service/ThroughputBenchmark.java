@@ -0,0 +1,190 @@
+package ru.mail.polis.service;
+
+import one.nio.http.HttpClient;
+import one.nio.net.ConnectionString;
+import ru.mail.polis.Files;
+import ru.mail.polis.dao.DAO;
+import ru.mail.polis.dao.DAOFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency of a three node cluster under many concurrent connections,
+ * with requests run on the fixed pool of platform threads or on virtual threads.
+ * Every connection sends replicated PUT and GET requests one after another.
+ * Virtual threads need JDK 21+ at runtime. The Java 11 build runs on it, but the Gradle wrapper
+ * does not, so {@code gradle serviceBenchmark} measures the fixed pool only, and the comparison
+ * needs this class run by java of JDK 21 on the test runtime classpath.
+ */
+public final class ThroughputBenchmark {
+    private static final int NODES = 3;
+    private static final int CONNECTIONS = 1000;
+    private static final int KEYS = 10_000;
+    private static final int VALUE_LENGTH = 256;
+    private static final long WARMUP_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final long MEASURE_MILLIS = TimeUnit.SECONDS.toMillis(20);
+
+    private ThroughputBenchmark() {
+        // Not instantiable
+    }
+
+    private static Map<String, ServiceConfig> modes() {
+        final Map<String, ServiceConfig> modes = new LinkedHashMap<>();
+        modes.put("fixed pool", new ServiceConfig());
+        final ServiceConfig virtual = new ServiceConfig();
+        virtual.virtualThreads = true;
+        modes.put("virtual threads", virtual);
+        return modes;
+    }
+
+    private static boolean virtualThreadsSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            socket.setReuseAddress(true);
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Connection sending requests until the deadline, latencies of requests after warmup are recorded.
+     */
+    private static final class Connection extends Thread {
+        private final HttpClient client;
+        private final long measureFrom;
+        private final long deadline;
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+
+        Connection(final String endpoint, final long measureFrom, final long deadline) {
+            super("bench-client");
+            this.client = new HttpClient(new ConnectionString(endpoint + "?timeout=5000&clientMaxPoolSize=1"));
+            this.measureFrom = measureFrom;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            final byte[] value = new byte[VALUE_LENGTH];
+            random.nextBytes(value);
+            long now = System.currentTimeMillis();
+            while (now < deadline) {
+                final String uri = "/v0/entity?replicas=2/3&id=key" + random.nextInt(KEYS);
+                final long start = System.nanoTime();
+                int status;
+                try {
+                    status = random.nextBoolean() ? client.put(uri, value).getStatus() : client.get(uri).getStatus();
+                } catch (Exception e) {
+                    status = 599;
+                }
+                final long latency = System.nanoTime() - start;
+                now = System.currentTimeMillis();
+                if (now >= measureFrom) {
+                    record(latency, status);
+                }
+            }
+            client.close();
+        }
+
+        private void record(final long latency, final int status) {
+            if (status >= 500) {
+                errors++;
+                return;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+        }
+    }
+
+    private static void run(final String name, final ServiceConfig config) throws Exception {
+        final Set<String> endpoints = new LinkedHashSet<>();
+        final int[] ports = new int[NODES];
+        for (int i = 0; i < NODES; i++) {
+            ports[i] = freePort();
+            endpoints.add("http://localhost:" + ports[i]);
+        }
+        final List<File> data = new ArrayList<>();
+        final List<DAO> daos = new ArrayList<>();
+        final List<Service> services = new ArrayList<>();
+        try {
+            for (int i = 0; i < NODES; i++) {
+                data.add(Files.createTempDirectory());
+                daos.add(DAOFactory.create(data.get(i)));
+                services.add(ServiceFactory.create(ports[i], daos.get(i), endpoints, config));
+                services.get(i).start();
+            }
+            final long measureFrom = System.currentTimeMillis() + WARMUP_MILLIS;
+            final long deadline = measureFrom + MEASURE_MILLIS;
+            final List<Connection> connections = new ArrayList<>(CONNECTIONS);
+            final List<String> nodes = new ArrayList<>(endpoints);
+            for (int i = 0; i < CONNECTIONS; i++) {
+                final Connection connection = new Connection(nodes.get(i % NODES), measureFrom, deadline);
+                connections.add(connection);
+                connection.start();
+            }
+            long[] all = new long[0];
+            int errors = 0;
+            for (final Connection connection : connections) {
+                connection.join();
+                final int from = all.length;
+                all = Arrays.copyOf(all, from + connection.count);
+                System.arraycopy(connection.latencies, 0, all, from, connection.count);
+                errors += connection.errors;
+            }
+            Arrays.sort(all);
+            System.out.printf("%-16s %8.0f req/s, p50 %7.2f ms, p99 %8.2f ms, errors %d%n",
+                    name,
+                    all.length * 1000.0 / MEASURE_MILLIS,
+                    all.length == 0 ? 0 : all[all.length / 2] / 1e6,
+                    all.length == 0 ? 0 : all[all.length * 99 / 100] / 1e6,
+                    errors);
+        } finally {
+            services.forEach(Service::stop);
+            for (final DAO dao : daos) {
+                dao.close();
+            }
+            for (final File dir : data) {
+                Files.recursiveDelete(dir);
+            }
+        }
+    }
+
+    /**
+     * Run benchmark for every mode.
+     *
+     * @param args ignored
+     */
+    public static void main(final String[] args) throws Exception {
+        System.out.printf("%d nodes, %d connections, PUT/GET 50/50 with replicas 2/3, %d cpus, JDK %s%n",
+                NODES, CONNECTIONS, Runtime.getRuntime().availableProcessors(), Runtime.version());
+        for (final Map.Entry<String, ServiceConfig> mode : modes().entrySet()) {
+            if (mode.getValue().virtualThreads && !virtualThreadsSupported()) {
+                System.out.printf("%-16s skipped, needs JDK 21+%n", mode.getKey());
+                continue;
+            }
+            run(mode.getKey(), mode.getValue());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ru.mail.polis.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.mail.polis.Files;
+import ru.mail.polis.dao.DAO;
+import ru.mail.polis.dao.DAOFactory;
+import ru.mail.polis.service.luckydaemon.ServiceImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Client and replica requests of a two node {@link Service} cluster run on separate workers.
+ */
+class WorkerPoolsTest extends ClusterTestBase {
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+    private static final int NODES = 2;
+    private final File[] data = new File[NODES];
+    private final DAO[] dao = new DAO[NODES];
+    private final Service[] storage = new Service[NODES];
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        final int[] ports = new int[NODES];
+        endpoints = new LinkedHashSet<>();
+        for (int i = 0; i < NODES; i++) {
+            ports[i] = randomPort();
+            endpoints.add(endpoint(ports[i]));
+        }
+        for (int i = 0; i < NODES; i++) {
+            data[i] = Files.createTempDirectory();
+            dao[i] = DAOFactory.create(data[i]);
+            storage[i] = ServiceFactory.create(ports[i], dao[i], endpoints);
+            start(i, storage[i]);
+        }
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        for (int i = 0; i < NODES; i++) {
+            stop(i, storage[i]);
+            dao[i].close();
+            Files.recursiveDelete(data[i]);
+        }
+        endpoints = Collections.emptySet();
+    }
+
+    @Test
+    void replicaRequestsUseReplicaWorkers() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final ServiceImpl coordinator = (ServiceImpl) storage[0];
+            final ServiceImpl replica = (ServiceImpl) storage[1];
+            final long clientBefore = replica.getWorkQueueStats().getSubmitted();
+
+            final String key = randomId();
+            assertEquals(201, upsert(0, key, randomValue(), 2, 2).getStatus());
+            assertEquals(200, get(0, key, 2, 2).getStatus());
+            assertEquals(202, delete(0, key, 2, 2).getStatus());
+
+            assertEquals(3, coordinator.getWorkQueueStats().getSubmitted());
+            assertEquals(0, coordinator.getReplicaQueueStats().getSubmitted());
+            assertEquals(clientBefore, replica.getWorkQueueStats().getSubmitted());
+            assertEquals(3, replica.getReplicaQueueStats().getSubmitted());
+        });
+    }
+
+    @Test
+    void oneAckReadIsLocal() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final ServiceImpl replica = (ServiceImpl) storage[1];
+            final String key = randomId();
+            final byte[] value = randomValue();
+            assertEquals(201, upsert(0, key, value, 2, 2).getStatus());
+            final long before = replica.getReplicaQueueStats().getSubmitted();
+
+            assertArrayEquals(value, get(0, key, 1, 2).getBody());
+            assertEquals(404, get(0, randomId(), 1, 2).getStatus());
+            assertEquals(before, replica.getReplicaQueueStats().getSubmitted());
+        });
+    }
+
+    @Test
+    void malformedReplicaTimestampRejected() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            final String key = randomId();
+            assertEquals(400, upsert(1, key, randomValue(), "X-OK-Proxy: True", "X-OK-Timestamp: abc").getStatus());
+            assertEquals(404, get(1, key).getStatus());
+        });
+    }
+}